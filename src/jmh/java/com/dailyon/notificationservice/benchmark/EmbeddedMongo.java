@@ -0,0 +1,62 @@
+package com.dailyon.notificationservice.benchmark;
+
+import com.dailyon.notificationservice.config.MongoIndexInitializer;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * mongo가 필요한 benchmark용 embedded mongod (테스트와 같은 flapdoodle, 5.0). 처음 실행할 때 mongod binary를 내려받음.
+ * 운영과 같은 index로 측정하도록 시작할 때 MongoIndexInitializer를 그대로 실행한다.
+ * benchmark의 @Setup(Level.Trial)에서 만들고 @TearDown에서 close.
+ */
+public final class EmbeddedMongo implements AutoCloseable {
+    private static final String DATABASE = "notification-benchmark";
+
+    private final MongodExecutable mongodExecutable;
+    private final MongoClient mongoClient;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    private EmbeddedMongo(MongodExecutable mongodExecutable, MongoClient mongoClient) {
+        this.mongodExecutable = mongodExecutable;
+        this.mongoClient = mongoClient;
+        this.reactiveMongoTemplate = new ReactiveMongoTemplate(mongoClient, DATABASE);
+    }
+
+    public static EmbeddedMongo start() {
+        MongodExecutable mongodExecutable;
+        int port;
+        try {
+            port = Network.getFreeServerPort();
+            mongodExecutable = MongodStarter.getDefaultInstance().prepare(MongodConfig.builder()
+                    .version(Version.Main.V5_0)
+                    .net(new Net(port, Network.localhostIsIPv6()))
+                    .build());
+            mongodExecutable.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("embedded mongo 시작 실패", e);
+        }
+        EmbeddedMongo embeddedMongo = new EmbeddedMongo(mongodExecutable, MongoClients.create("mongodb://localhost:" + port));
+        new MongoIndexInitializer(embeddedMongo.reactiveMongoTemplate).run(null);
+        return embeddedMongo;
+    }
+
+    public ReactiveMongoTemplate getReactiveMongoTemplate() {
+        return reactiveMongoTemplate;
+    }
+
+    @Override
+    public void close() {
+        mongoClient.close();
+        mongodExecutable.stop();
+    }
+}
@@ -0,0 +1,151 @@
+package com.dailyon.notificationservice.benchmark;
+
+import com.dailyon.notificationservice.domain.notification.document.MemberInbox;
+import com.dailyon.notificationservice.domain.notification.document.MemberInboxOverflow;
+import com.dailyon.notificationservice.domain.notification.document.NotificationTemplate;
+import com.dailyon.notificationservice.domain.notification.document.UserNotification;
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import com.dailyon.notificationservice.domain.notification.dto.NotificationPage;
+import com.dailyon.notificationservice.domain.notification.service.InboxService;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /notifications/all 한 번의 응답 시간. member 한 명의 알림이 entries개일 때 (embedded mongo).
+ * 최신 50개(notification.inbox.capacity 기본값)는 member_inbox에, 나머지는 InboxCompactor가 옮긴 것처럼 member_inbox_overflow에 둠.
+ * firstPage/deepPage는 InboxService.findPage로 20개씩, legacyAll은 이전 구현처럼 user_notification의 id 전체를 template에서 조회.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InboxPageBenchmark {
+    private static final long MEMBER_ID = 1L;
+    private static final int INBOX_CAPACITY = 50;
+    private static final int PAGE_SIZE = 20;
+    private static final int INSERT_BATCH = 10_000;
+
+    @Param({"100", "10000", "100000"})
+    public int entries;
+
+    private EmbeddedMongo embeddedMongo;
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    private InboxService inboxService;
+    private List<String> unreadIds;
+    private List<String> readIds;
+    // 가운데 entry 바로 다음 페이지의 cursor
+    private String deepCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        embeddedMongo = EmbeddedMongo.start();
+        reactiveMongoTemplate = embeddedMongo.getReactiveMongoTemplate();
+        inboxService = new InboxService(reactiveMongoTemplate, 200);
+
+        long newest = System.currentTimeMillis();
+        List<Document> templates = new ArrayList<>(entries);
+        List<Document> inboxEntries = new ArrayList<>(INBOX_CAPACITY);
+        List<Document> overflows = new ArrayList<>(Math.max(0, entries - INBOX_CAPACITY));
+        unreadIds = new ArrayList<>();
+        readIds = new ArrayList<>();
+        for (int i = 0; i < entries; i++) {
+            ObjectId templateId = new ObjectId();
+            Date createdAt = new Date(newest - i * 1000L);
+            // 최근 10%는 안 읽음
+            boolean read = i >= entries / 10;
+            String message = "주문하신 상품이 출발했습니다. 주문번호: " + i;
+            templates.add(new Document("_id", templateId)
+                    .append("message", message)
+                    .append("linkUrl", "/order-history")
+                    .append("notificationType", NotificationType.ORDER_SHIPPED.name())
+                    .append("createdAt", createdAt));
+            Document entry = new Document("templateId", templateId.toHexString())
+                    .append("notificationType", NotificationType.ORDER_SHIPPED.name())
+                    .append("message", message)
+                    .append("linkUrl", "/order-history")
+                    .append("createdAt", createdAt)
+                    .append("read", read);
+            if (i < INBOX_CAPACITY) {
+                inboxEntries.add(entry);
+            } else {
+                Document overflow = new Document("_id", MEMBER_ID + ":" + templateId.toHexString() + ":" + createdAt.getTime())
+                        .append("memberId", MEMBER_ID);
+                overflow.putAll(entry);
+                overflows.add(overflow.append("expireAt", new Date(newest + TimeUnit.DAYS.toMillis(365))));
+            }
+            (read ? readIds : unreadIds).add(templateId.toHexString());
+            if (i == entries / 2) {
+                deepCursor = createdAt.getTime() + "_" + templateId.toHexString();
+            }
+        }
+
+        insert(NotificationTemplate.class, templates);
+        insert(MemberInboxOverflow.class, overflows);
+        insert(MemberInbox.class, List.of(new Document("memberId", MEMBER_ID)
+                .append("entries", inboxEntries)
+                .append("entryCount", inboxEntries.size())
+                .append("revision", 0L)
+                .append("migrated", true)));
+        insert(UserNotification.class, List.of(new Document("memberId", MEMBER_ID)
+                .append("unread", unreadIds)
+                .append("read", readIds)
+                .append("unreadCount", unreadIds.size())));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        embeddedMongo.close();
+    }
+
+    @Benchmark
+    public NotificationPage firstPage() {
+        return inboxService.findPage(MEMBER_ID, null, PAGE_SIZE).block();
+    }
+
+    @Benchmark
+    public NotificationPage deepPage() {
+        return inboxService.findPage(MEMBER_ID, deepCursor, PAGE_SIZE).block();
+    }
+
+    @Benchmark
+    public Long legacyAll() {
+        return Flux.concat(findTemplates(unreadIds), findTemplates(readIds)).count().block();
+    }
+
+    private Flux<NotificationTemplate> findTemplates(List<String> ids) {
+        return reactiveMongoTemplate.find(Query.query(Criteria.where("_id").in(ids)), NotificationTemplate.class);
+    }
+
+    private void insert(Class<?> documentClass, List<Document> documents) {
+        Flux.fromIterable(documents)
+                .buffer(INSERT_BATCH)
+                .concatMap(batch -> reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(documentClass))
+                        .flatMap(collection -> Mono.from(collection.insertMany(batch))))
+                .blockLast();
+    }
+}
@@ -0,0 +1,105 @@
+package com.dailyon.notificationservice.benchmark;
+
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import com.dailyon.notificationservice.domain.notification.dto.NotificationData;
+import com.dailyon.notificationservice.domain.notification.dto.NotificationDataWithWhoToNotify;
+import com.dailyon.notificationservice.domain.notification.dto.RawNotificationData;
+import com.dailyon.notificationservice.domain.notification.dto.SQSNotificationDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQS message(SQSNotificationDto)와 inbox stream entry(NotificationDataWithWhoToNotify)의 Jackson 직렬화/역직렬화.
+ * ObjectMapper는 Spring Boot가 만드는 것과 같은 설정(Jackson2ObjectMapperBuilder)을 씀.
+ * recipients는 whoToNotify 길이. 0은 전체 발송, 1000은 fan-out chunk 하나의 기본 크기.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationJsonBenchmark {
+
+    @Param({"0", "1", "1000"})
+    public int recipients;
+
+    private ObjectMapper objectMapper;
+    private SQSNotificationDto sqsNotificationDto;
+    private String sqsNotificationJson;
+    private NotificationDataWithWhoToNotify notificationDataWithWhoToNotify;
+    private String notificationDataWithWhoToNotifyJson;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        List<Long> whoToNotify = new ArrayList<>(recipients);
+        for (long memberId = 1; memberId <= recipients; memberId++) {
+            whoToNotify.add(memberId);
+        }
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("productId", "1001");
+        parameters.put("productName", "오버핏 울 코트");
+        parameters.put("sizeId", "3");
+        parameters.put("sizeName", "L");
+
+        sqsNotificationDto = new SQSNotificationDto(whoToNotify,
+                new RawNotificationData(null, parameters, NotificationType.PRODUCT_RESTOCK));
+        sqsNotificationJson = objectMapper.writeValueAsString(sqsNotificationDto);
+
+        NotificationData notificationData = NotificationData.builder()
+                .id("655b1a2e9f1c4a3b2d1e0f99")
+                .message("오버핏 울 코트 L 사이즈가 재입고 되었습니다.")
+                .linkUrl("/products/1001")
+                .notificationType(NotificationType.PRODUCT_RESTOCK)
+                .read(false)
+                .build();
+        notificationDataWithWhoToNotify = NotificationDataWithWhoToNotify.create(whoToNotify, notificationData);
+        notificationDataWithWhoToNotifyJson = objectMapper.writeValueAsString(notificationDataWithWhoToNotify);
+
+        // 역직렬화 결과가 원본과 같아야 의미 있는 비교
+        if (!sqsNotificationDto.equals(readSqsNotificationDto())
+                || !notificationDataWithWhoToNotify.equals(readNotificationDataWithWhoToNotify())) {
+            throw new IllegalStateException("역직렬화 결과가 원본과 다릅니다.");
+        }
+    }
+
+    @Benchmark
+    public String writeSqsNotificationDto() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(sqsNotificationDto);
+    }
+
+    @Benchmark
+    public SQSNotificationDto readSqsNotificationDto() throws JsonProcessingException {
+        return objectMapper.readValue(sqsNotificationJson, SQSNotificationDto.class);
+    }
+
+    @Benchmark
+    public String writeNotificationDataWithWhoToNotify() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(notificationDataWithWhoToNotify);
+    }
+
+    @Benchmark
+    public NotificationDataWithWhoToNotify readNotificationDataWithWhoToNotify() throws JsonProcessingException {
+        return objectMapper.readValue(notificationDataWithWhoToNotifyJson, NotificationDataWithWhoToNotify.class);
+    }
+}
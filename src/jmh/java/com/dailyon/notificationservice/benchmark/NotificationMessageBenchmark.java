@@ -0,0 +1,75 @@
+package com.dailyon.notificationservice.benchmark;
+
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import com.dailyon.notificationservice.domain.notification.dto.NotificationData;
+import com.dailyon.notificationservice.domain.notification.dto.RawNotificationData;
+import com.dailyon.notificationservice.domain.notification.message.NotificationMessageProperties;
+import com.dailyon.notificationservice.domain.notification.message.NotificationMessageRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQS message -> NotificationData 변환에서 메세지 생성 비용. legacy는 String.format + 매번 새 NumberFormat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationMessageBenchmark {
+
+    @Param({"ORDER_COMPLETE", "PRODUCT_RESTOCK", "GIFT_RECEIVED", "AUCTION_END"})
+    public NotificationType notificationType;
+
+    private RawNotificationData rawNotificationData;
+    private NotificationMessageRenderer renderer;
+
+    @Setup
+    public void setUp() {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("orderId", "20231120-000123");
+        parameters.put("totalAmount", "1234500");
+        parameters.put("productId", "1001");
+        parameters.put("productName", "오버핏 울 코트");
+        parameters.put("sizeName", "L");
+        parameters.put("nickname", "데일리온");
+        parameters.put("auctionId", "42");
+        rawNotificationData = new RawNotificationData(null, parameters, notificationType);
+        renderer = new NotificationMessageRenderer(new NotificationMessageProperties());
+
+        String legacy = LegacyNotificationMessages.generateMessage(notificationType, parameters, null);
+        String rendered = renderer.render(notificationType, parameters, null);
+        if (!legacy.equals(rendered)) {
+            throw new IllegalStateException("메세지가 다릅니다: [" + legacy + "] [" + rendered + "]");
+        }
+    }
+
+    @Benchmark
+    public String legacyGenerateMessage() {
+        return LegacyNotificationMessages.generateMessage(notificationType, rawNotificationData.getParameters(), null);
+    }
+
+    @Benchmark
+    public String renderMessage() {
+        return renderer.render(notificationType, rawNotificationData.getParameters(), null);
+    }
+
+    @Benchmark
+    public NotificationData fromRawData() {
+        return NotificationData.fromRawData(rawNotificationData, renderer);
+    }
+}
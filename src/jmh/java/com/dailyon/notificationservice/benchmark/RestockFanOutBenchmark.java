@@ -0,0 +1,209 @@
+package com.dailyon.notificationservice.benchmark;
+
+import com.dailyon.notificationservice.domain.notification.document.BroadcastAudienceBucket;
+import com.dailyon.notificationservice.domain.notification.document.RestockSubscriberBucket;
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import com.dailyon.notificationservice.domain.notification.dto.NotificationData;
+import com.dailyon.notificationservice.domain.notification.dto.NotificationDataWithWhoToNotify;
+import com.dailyon.notificationservice.domain.notification.retention.NotificationRetentionProperties;
+import com.dailyon.notificationservice.domain.notification.service.RestockSubscriberService;
+import com.dailyon.notificationservice.domain.notification.service.SseNotificationService;
+import com.dailyon.notificationservice.domain.notification.sse.SseConnectionRegistry;
+import com.dailyon.notificationservice.domain.notification.sse.SseFrameEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 재입고 알림 신청자 subscribers명을 fan-out chunk로 읽을 때 첫 chunk까지의 시간과 heap 사용량 (embedded mongo).
+ * firstChunk는 첫 chunk를 읽어서 저장하고 발송할 때까지. 신청자 수가 shared-audience-threshold 이상이므로
+ * 저장은 SHARED_AUDIENCE처럼 BroadcastAudienceBucket 하나, 발송은 SseNotificationService로 연결 분류와 SSE frame 인코딩,
+ * 미연결 member의 stream payload 직렬화까지 (redis XADD는 제외. 연결된 member는 없음).
+ * allChunks는 신청자 전체를 chunk 단위로 흘려보내는 비용, legacyCollectAll은 이전 구현처럼 신청자 전체를 list로 모은 뒤 첫 chunk를 저장/발송.
+ * peak heap은 호출 전 GC 이후 증가분으로, HeapCounters의 peakHeapBytes로 결과에 함께 기록됨. mongod는 별도 process라 포함되지 않음.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class RestockFanOutBenchmark {
+    private static final Long PRODUCT_ID = 1L;
+    private static final Long SIZE_ID = 1L;
+    private static final int BUCKET_SIZE = 1000; // notification.restock.bucket-size 기본값
+    private static final int CHUNK_SIZE = 1000; // notification.fan-out.chunk-size 기본값
+    private static final int INSERT_BATCH = 100;
+
+    @Param({"1000000"})
+    public int subscribers;
+
+    private EmbeddedMongo embeddedMongo;
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    private RestockSubscriberService restockSubscriberService;
+    private SseNotificationService sseNotificationService;
+    private ObjectMapper objectMapper;
+    private NotificationRetentionProperties retentionProperties;
+    private NotificationData notificationData;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        embeddedMongo = EmbeddedMongo.start();
+        reactiveMongoTemplate = embeddedMongo.getReactiveMongoTemplate();
+        restockSubscriberService = new RestockSubscriberService(reactiveMongoTemplate, BUCKET_SIZE);
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        // 발송에 쓰는 SSE 연결 registry와 frame 인코딩만 채움
+        sseNotificationService = new SseNotificationService(null, null, null, null,
+                new SseFrameEncoder(objectMapper), null, null, null, null);
+        retentionProperties = new NotificationRetentionProperties();
+        notificationData = NotificationData.builder()
+                .id(new ObjectId().toHexString())
+                .message("오버핏 울 코트 L 사이즈가 재입고 되었습니다.")
+                .linkUrl("/products/1001")
+                .notificationType(NotificationType.PRODUCT_RESTOCK)
+                .read(false)
+                .build();
+
+        List<Document> buckets = new ArrayList<>();
+        for (int from = 0; from < subscribers; from += BUCKET_SIZE) {
+            List<Long> memberIds = new ArrayList<>(BUCKET_SIZE);
+            for (long memberId = from + 1; memberId <= Math.min(from + BUCKET_SIZE, subscribers); memberId++) {
+                memberIds.add(memberId);
+            }
+            buckets.add(new Document("_id", new ObjectId())
+                    .append("productId", PRODUCT_ID)
+                    .append("sizeId", SIZE_ID)
+                    .append("memberIds", memberIds)
+                    .append("count", memberIds.size()));
+        }
+        String collectionName = reactiveMongoTemplate.getCollectionName(RestockSubscriberBucket.class);
+        Flux.fromIterable(buckets)
+                .buffer(INSERT_BATCH)
+                .concatMap(batch -> reactiveMongoTemplate.getCollection(collectionName)
+                        .flatMap(collection -> Mono.from(collection.insertMany(batch))))
+                .blockLast();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        embeddedMongo.close();
+    }
+
+    @Benchmark
+    public String firstChunk(HeapCounters heapCounters) {
+        return restockSubscriberService.findSubscribers(PRODUCT_ID, SIZE_ID)
+                .buffer(CHUNK_SIZE)
+                .next()
+                .flatMap(this::writeAndDispatch)
+                .block();
+    }
+
+    @Benchmark
+    public Long allChunks(HeapCounters heapCounters) {
+        return restockSubscriberService.findSubscribers(PRODUCT_ID, SIZE_ID)
+                .buffer(CHUNK_SIZE)
+                .count()
+                .block();
+    }
+
+    @Benchmark
+    public String legacyCollectAll(HeapCounters heapCounters) {
+        return restockSubscriberService.findSubscribers(PRODUCT_ID, SIZE_ID)
+                .collectList()
+                .map(memberIds -> memberIds.subList(0, Math.min(CHUNK_SIZE, memberIds.size())))
+                .flatMap(this::writeAndDispatch)
+                .block();
+    }
+
+    /*
+     * fan-out chunk 하나의 저장과 발송. 저장은 BroadcastService.addAudience, 발송은 NotificationProcessingService.sendNotifications와
+     * 같은 순서 (연결된 member에게 SSE, 나머지는 소유 인스턴스 stream에 쓸 payload). 반환값은 stream payload
+     */
+    private Mono<String> writeAndDispatch(List<Long> memberIds) {
+        BroadcastAudienceBucket bucket = BroadcastAudienceBucket.builder()
+                .broadcastId(notificationData.getId())
+                .memberIds(memberIds)
+                .expireAt(retentionProperties.expireAt(NotificationType.PRODUCT_RESTOCK, Instant.now()))
+                .build();
+        return reactiveMongoTemplate.insert(bucket)
+                .then(Mono.defer(() -> {
+                    SseConnectionRegistry.Partition partition = sseNotificationService.partitionByConnection(memberIds);
+                    return sseNotificationService.sendNotificationToConnectedUsers(partition.getConnected(), notificationData)
+                            .then(Mono.fromCallable(() -> objectMapper.writeValueAsString(
+                                    NotificationDataWithWhoToNotify.create(partition.getUnconnected(), notificationData))));
+                }));
+    }
+
+    /**
+     * 호출 하나의 peak heap 증가분 (호출 전 GC 이후 모든 heap pool의 peak 합 - 호출 전 사용량).
+     * SingleShotTime이라 iteration당 호출이 하나이므로 결과의 peakHeapBytes가 호출 하나의 값.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class HeapCounters {
+        public long peakHeapBytes;
+
+        private List<MemoryPoolMXBean> heapPools;
+        private long baselineHeap;
+
+        @Setup(Level.Trial)
+        public void findHeapPools() {
+            heapPools = new ArrayList<>();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    heapPools.add(pool);
+                }
+            }
+        }
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            peakHeapBytes = 0;
+        }
+
+        @Setup(Level.Invocation)
+        public void resetHeapPeak() {
+            System.gc();
+            baselineHeap = 0;
+            for (MemoryPoolMXBean pool : heapPools) {
+                pool.resetPeakUsage();
+                baselineHeap += pool.getUsage().getUsed();
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void recordHeapPeak() {
+            long used = 0;
+            for (MemoryPoolMXBean pool : heapPools) {
+                used += pool.getPeakUsage().getUsed();
+            }
+            peakHeapBytes = Math.max(peakHeapBytes, used - baselineHeap);
+        }
+    }
+}
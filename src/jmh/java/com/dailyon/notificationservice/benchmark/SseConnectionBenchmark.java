@@ -0,0 +1,233 @@
+package com.dailyon.notificationservice.benchmark;
+
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import com.dailyon.notificationservice.domain.notification.dto.NotificationData;
+import com.dailyon.notificationservice.domain.notification.sse.SseConnection;
+import com.dailyon.notificationservice.domain.notification.sse.SseConnectionRegistry;
+import com.dailyon.notificationservice.domain.notification.sse.SseFrame;
+import com.dailyon.notificationservice.domain.notification.sse.SseFrameEncoder;
+import com.dailyon.notificationservice.domain.notification.sse.SseOutboundPolicy;
+import com.dailyon.notificationservice.domain.notification.sse.SseOutboundProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SseNotificationService의 연결 등록/조회/fan-out 경로. service는 Redis/Mongo 의존성이 있어서,
+ * 같은 SseConnectionRegistry, SseConnection, SseFrame으로 service의 loop를 그대로 재현함 (heartbeat wheel, connection directory 제외).
+ * legacy는 기존 ConcurrentHashMap<Long, ...> + isUserConnected 두 번 호출 + member마다 직렬화하던 방식.
+ * 모든 연결은 frame을 바로 소비하는 subscriber가 붙어있어서 outbound queue가 차지 않음.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SseConnectionBenchmark {
+    private static final int KEY_COUNT = 1 << 16;
+    private static final int CHUNK_SIZE = 1000; // notification.fanout.chunk-size 기본값
+
+    @Param({"10000", "100000", "1000000"})
+    public int connections;
+
+    private SseOutboundPolicy outboundPolicy;
+    private SseFrameEncoder sseFrameEncoder;
+    private NotificationData notificationData;
+    private SseFrame frame;
+
+    private SseConnectionRegistry<SseConnection> registry;
+    private Map<Long, SseConnection> legacyMap;
+
+    // 1..connections 중 임의의 member. 재연결(register) 대상
+    private long[] connectedKeys;
+    // 1..connections * 2 중 임의의 member. 절반 정도만 연결되어 있음
+    private long[] mixedKeys;
+    private int cursor;
+
+    // fan-out chunk 하나. connectedChunk는 모두 연결, mixedChunk는 절반 정도 연결
+    private List<Long> connectedChunk;
+    private List<Long> mixedChunk;
+
+    @Setup
+    public void setUp() {
+        sseFrameEncoder = new SseFrameEncoder(Jackson2ObjectMapperBuilder.json().build());
+        outboundPolicy = new SseOutboundPolicy(new SseOutboundProperties(), sseFrameEncoder, new SimpleMeterRegistry());
+        notificationData = NotificationData.builder()
+                .id("655b1a2e9f1c4a3b2d1e0f99")
+                .message("오버핏 울 코트 L 사이즈가 재입고 되었습니다.")
+                .linkUrl("/products/1001")
+                .notificationType(NotificationType.PRODUCT_RESTOCK)
+                .read(false)
+                .build();
+        frame = sseFrameEncoder.encode(notificationData);
+
+        registry = new SseConnectionRegistry<>();
+        legacyMap = new ConcurrentHashMap<>();
+        for (long memberId = 1; memberId <= connections; memberId++) {
+            SseConnection connection = connect(memberId);
+            registry.put(memberId, connection);
+            legacyMap.put(memberId, connection);
+        }
+
+        SplittableRandom random = new SplittableRandom(42);
+        connectedKeys = new long[KEY_COUNT];
+        mixedKeys = new long[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            connectedKeys[i] = random.nextLong(1, connections + 1L);
+            mixedKeys[i] = random.nextLong(1, connections * 2L + 1);
+        }
+        connectedChunk = new ArrayList<>(CHUNK_SIZE);
+        mixedChunk = new ArrayList<>(CHUNK_SIZE);
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            connectedChunk.add(connectedKeys[i]);
+            mixedChunk.add(mixedKeys[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        registry.forEach((memberId, connection) -> connection.complete());
+        legacyMap.values().forEach(SseConnection::complete);
+    }
+
+    // ===== 등록: streamNotifications의 연결 생성 + 기존 연결 교체 =====
+
+    @Benchmark
+    public SseConnection register() {
+        long memberId = connectedKeys[next()];
+        SseConnection previous = registry.put(memberId, connect(memberId));
+        if (previous != null) {
+            previous.complete();
+        }
+        return previous;
+    }
+
+    @Benchmark
+    public SseConnection legacyRegister() {
+        long memberId = connectedKeys[next()];
+        SseConnection previous = legacyMap.put(memberId, connect(memberId));
+        if (previous != null) {
+            previous.complete();
+        }
+        return previous;
+    }
+
+    // ===== 조회 =====
+
+    @Benchmark
+    public SseConnection lookup() {
+        return registry.get(mixedKeys[next()]);
+    }
+
+    @Benchmark
+    public SseConnection legacyLookup() {
+        return legacyMap.get(mixedKeys[next()]);
+    }
+
+    // sendNotifications에서 chunk를 연결/미연결로 나누는 비용
+    @Benchmark
+    public SseConnectionRegistry.Partition partitionChunk() {
+        return registry.partition(mixedChunk);
+    }
+
+    @Benchmark
+    public int legacyPartitionChunk() {
+        List<Long> connected = new ArrayList<>();
+        List<Long> unconnected = new ArrayList<>();
+        for (Long memberId : mixedChunk) {
+            if (legacyMap.containsKey(memberId)) {
+                connected.add(memberId);
+            }
+        }
+        for (Long memberId : mixedChunk) {
+            if (!legacyMap.containsKey(memberId)) {
+                unconnected.add(memberId);
+            }
+        }
+        return connected.size() + unconnected.size();
+    }
+
+    // ===== fan-out =====
+
+    // sendNotificationToConnectedUsers: frame 한 번 인코딩 후 chunk의 모든 연결이 공유
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int fanOutChunk() {
+        SseFrame encoded = sseFrameEncoder.encode(notificationData);
+        int delivered = 0;
+        for (Long memberId : connectedChunk) {
+            SseConnection connection = registry.get(memberId);
+            if (connection != null && connection.send(encoded)) {
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int legacyFanOutChunk() {
+        int delivered = 0;
+        for (Long memberId : connectedChunk) {
+            SseConnection connection = legacyMap.get(memberId);
+            if (connection != null && connection.send(sseFrameEncoder.encode(notificationData))) {
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    // sendSseNotificationToAllUsers: 이 인스턴스의 모든 연결에 같은 frame
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int broadcast() {
+        int[] delivered = new int[1];
+        registry.forEach((memberId, connection) -> {
+            if (connection.send(frame)) {
+                delivered[0]++;
+            }
+        });
+        return delivered[0];
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int legacyBroadcast() {
+        int delivered = 0;
+        for (SseConnection connection : legacyMap.values()) {
+            if (connection.send(sseFrameEncoder.encode(notificationData))) {
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    private SseConnection connect(long memberId) {
+        SseConnection connection = new SseConnection(memberId, outboundPolicy, evicted -> { });
+        connection.asFlux().subscribe(); // SSE 응답처럼 frame을 바로 가져감
+        return connection;
+    }
+
+    private int next() {
+        return cursor++ & (KEY_COUNT - 1);
+    }
+}
@@ -0,0 +1,180 @@
+package com.dailyon.notificationservice.domain.notification.service;
+
+import com.dailyon.notificationservice.benchmark.EmbeddedMongo;
+import com.dailyon.notificationservice.domain.notification.document.NotificationTemplate;
+import com.dailyon.notificationservice.domain.notification.document.UserNotification;
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import com.dailyon.notificationservice.domain.notification.dto.NotificationData;
+import com.dailyon.notificationservice.domain.notification.repository.NotificationTemplateRepository;
+import com.dailyon.notificationservice.domain.notification.retention.NotificationRetentionProperties;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * SQS batch 하나(10개)의 mongo 쓰기 처리량. 결과는 초당 message 수 (embedded mongo, redis 기록과 SSE 발송은 제외).
+ * perMessage는 batch 처리 이전처럼 message마다 template 저장, user_notification bulkWrite, member_inbox bulkWrite를 따로 실행.
+ * batched는 template을 한 번에 저장하고 processMerged가 쓰는 NotificationProcessingService.writeMerged를 그대로 호출.
+ * MEMBER_POOL의 member마다 user_notification을 미리 만들어 두므로 unread 추가는 실제로 document를 갱신함.
+ * message마다 내용이 달라서 interning으로 재사용되는 template은 없음.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestionBatchBenchmark {
+    private static final int BATCH_SIZE = 10; // SQS 수신 한 번의 최대 message 수
+    private static final int MEMBER_POOL = 10_000;
+
+    // message 하나의 대상 member 수. 1은 주문 알림, 100은 같은 batch 안에서 대상이 겹치는 알림
+    @Param({"1", "100"})
+    public int recipients;
+
+    private EmbeddedMongo embeddedMongo;
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    private NotificationTemplateStore notificationTemplateStore;
+    private InboxService inboxService;
+    private NotificationProcessingService notificationProcessingService;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        embeddedMongo = EmbeddedMongo.start();
+        reactiveMongoTemplate = embeddedMongo.getReactiveMongoTemplate();
+        NotificationTemplateRepository notificationTemplateRepository = new ReactiveMongoRepositoryFactory(reactiveMongoTemplate)
+                .getRepository(NotificationTemplateRepository.class);
+        notificationTemplateStore = new NotificationTemplateStore(reactiveMongoTemplate, notificationTemplateRepository,
+                new NotificationRetentionProperties(), new SimpleMeterRegistry(), true, 1000, DataSize.ofMegabytes(32));
+        inboxService = new InboxService(reactiveMongoTemplate, 200);
+        // redis mirror를 끄면 evict는 redis에 접근하지 않으므로 연결하지 않은 template으로 충분
+        ReactiveRedisTemplate<String, String> reactiveRedisTemplate =
+                new ReactiveRedisTemplate<>(new LettuceConnectionFactory(), RedisSerializationContext.string());
+        UnreadCountService unreadCountService = new UnreadCountService(reactiveMongoTemplate, reactiveRedisTemplate,
+                new SimpleMeterRegistry(), false, Duration.ofMinutes(10), 500);
+        // writeMerged가 쓰는 mongo 의존성만 채움
+        notificationProcessingService = new NotificationProcessingService(null, null, null, reactiveMongoTemplate,
+                null, null, null, notificationTemplateStore, inboxService, unreadCountService, null, null, null, null);
+
+        List<Document> userNotifications = new ArrayList<>(MEMBER_POOL);
+        for (long memberId = 1; memberId <= MEMBER_POOL; memberId++) {
+            userNotifications.add(new Document("memberId", memberId)
+                    .append("unread", Collections.emptyList())
+                    .append("read", Collections.emptyList())
+                    .append("unreadCount", 0));
+        }
+        reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(UserNotification.class))
+                .flatMap(collection -> Mono.from(collection.insertMany(userNotifications)))
+                .block();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        embeddedMongo.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void perMessage() {
+        Flux.fromIterable(nextBatch())
+                .flatMap(message -> notificationTemplateStore.saveAll(Collections.singletonList(message.notificationData))
+                        .flatMap(templates -> {
+                            NotificationTemplate template = templates.get(0);
+                            return Mono.when(
+                                    bulkWrite(NotificationProcessingService.addUnreadWriteModels(message.memberIds, template.getId())),
+                                    inboxService.append(message.memberIds, template));
+                        }))
+                .blockLast();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void batched() {
+        List<IngestedNotification> batch = nextBatch();
+        List<NotificationData> notificationDatas = batch.stream()
+                .map(message -> message.notificationData)
+                .collect(Collectors.toList());
+        notificationTemplateStore.saveAll(notificationDatas)
+                .flatMap(templates -> {
+                    Map<Long, List<NotificationTemplate>> templatesByMember = new LinkedHashMap<>();
+                    for (int i = 0; i < batch.size(); i++) {
+                        NotificationTemplate template = templates.get(i);
+                        for (Long memberId : batch.get(i).memberIds) {
+                            templatesByMember.computeIfAbsent(memberId, key -> new ArrayList<>(1)).add(template);
+                        }
+                    }
+                    return notificationProcessingService.writeMerged(templatesByMember);
+                })
+                .block();
+    }
+
+    private List<IngestedNotification> nextBatch() {
+        List<IngestedNotification> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            long id = sequence++;
+            NotificationData notificationData = NotificationData.builder()
+                    .message("주문이 완료되었습니다. 주문번호: " + id)
+                    .linkUrl("/order-history")
+                    .notificationType(NotificationType.ORDER_COMPLETE)
+                    .read(false)
+                    .build();
+            // batch 안의 message끼리 대상 절반이 겹치도록 recipients / 2씩 밀어서 고름
+            long first = (id * Math.max(1, recipients / 2)) % MEMBER_POOL;
+            List<Long> memberIds = new ArrayList<>(recipients);
+            for (int j = 0; j < recipients; j++) {
+                memberIds.add((first + j) % MEMBER_POOL + 1);
+            }
+            batch.add(new IngestedNotification(notificationData, memberIds));
+        }
+        return batch;
+    }
+
+    private Mono<Void> bulkWrite(List<WriteModel<Document>> bulkWriteModels) {
+        return reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(UserNotification.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(bulkWriteModels, new BulkWriteOptions().ordered(false))))
+                .then();
+    }
+
+    private static class IngestedNotification {
+        private final NotificationData notificationData;
+        private final List<Long> memberIds;
+
+        private IngestedNotification(NotificationData notificationData, List<Long> memberIds) {
+            this.notificationData = notificationData;
+            this.memberIds = memberIds;
+        }
+    }
+}
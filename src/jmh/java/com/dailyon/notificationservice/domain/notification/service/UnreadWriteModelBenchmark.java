@@ -0,0 +1,51 @@
+package com.dailyon.notificationservice.domain.notification.service;
+
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * updateMultipleUserNotifications에서 bulkWrite에 넘길 UpdateOneModel 목록을 만드는 비용 (Mongo I/O 제외).
+ * addUnreadWriteModels가 package-private이라 같은 package에 둠. 1000은 fan-out chunk 하나의 기본 크기.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnreadWriteModelBenchmark {
+    private static final String TEMPLATE_ID = "655b1a2e9f1c4a3b2d1e0f99";
+
+    @Param({"1000", "10000", "100000"})
+    public int memberCount;
+
+    private List<Long> memberIds;
+
+    @Setup
+    public void setUp() {
+        memberIds = new ArrayList<>(memberCount);
+        for (long memberId = 1; memberId <= memberCount; memberId++) {
+            memberIds.add(memberId);
+        }
+    }
+
+    @Benchmark
+    public List<WriteModel<Document>> addUnreadWriteModels() {
+        return NotificationProcessingService.addUnreadWriteModels(memberIds, TEMPLATE_ID);
+    }
+}
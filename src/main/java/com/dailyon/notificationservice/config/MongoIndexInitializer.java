@@ -0,0 +1,104 @@
+package com.dailyon.notificationservice.config;
+
+import com.dailyon.notificationservice.domain.notification.document.BroadcastAudienceBucket;
+import com.dailyon.notificationservice.domain.notification.document.BroadcastNotification;
+import com.dailyon.notificationservice.domain.notification.document.MemberInbox;
+import com.dailyon.notificationservice.domain.notification.document.MemberInboxOverflow;
+import com.dailyon.notificationservice.domain.notification.document.NotificationTemplate;
+import com.dailyon.notificationservice.domain.notification.document.RestockSubscriberBucket;
+import com.dailyon.notificationservice.domain.notification.document.UserNotification;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * document class에 선언된 index(@Indexed, @CompoundIndex)를 시작할 때 생성.
+ * spring.data.mongodb.auto-index-creation은 꺼져 있으므로(기본값도 false) 여기 등록된 class의 index만 만들어짐.
+ * 같은 index가 이미 있으면 아무것도 하지 않음. 기존 데이터 때문에 만들 수 없는 index는 로그를 남기고 계속 진행.
+ * 단 TTL index(expireAfterSeconds)는 없으면 보관 기간이 지난 document가 지워지지 않으므로, 생성 후 실제로 있는지 확인하고 없으면 시작하지 않음.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MongoIndexInitializer implements ApplicationRunner {
+    // contentHash unique index는 NotificationTemplateStore.insertInterned의 중복 판단에,
+    // member_inbox memberId unique index는 InboxService.append의 upsert 재시도와 InboxMigrationService의 upsert에,
+    // user_notification unreadCount index는 UnreadCountService.reconcile의 조회 범위를 좁히는 데 필요
+    // notification_broadcast messageId unique index는 BroadcastService.save의 재전송 중복 판단에, createdAt index는 BroadcastService.merge 조회에,
+    // restock_subscriber_bucket index는 RestockSubscriberService의 열린 bucket 찾기(upsert)와 신청 여부/해제 조회에 필요
+    // expireAt TTL index는 NotificationTemplate, MemberInboxOverflow, BroadcastNotification, BroadcastAudienceBucket의 보관 기간 삭제에 필요
+    private static final List<Class<?>> INDEXED_DOCUMENTS = Arrays.asList(
+            NotificationTemplate.class,
+            MemberInbox.class,
+            MemberInboxOverflow.class,
+            UserNotification.class,
+            BroadcastNotification.class,
+            BroadcastAudienceBucket.class,
+            RestockSubscriberBucket.class);
+    private static final String EXPIRE_AFTER_SECONDS = "expireAfterSeconds";
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        IndexResolver indexResolver = IndexResolver.create(reactiveMongoTemplate.getConverter().getMappingContext());
+        Flux.fromIterable(INDEXED_DOCUMENTS)
+                .concatMap(documentClass -> {
+                    List<IndexDefinition> indexes = new ArrayList<>();
+                    indexResolver.resolveIndexFor(documentClass).forEach(indexes::add);
+                    return Flux.fromIterable(indexes)
+                            .concatMap(index -> reactiveMongoTemplate.indexOps(documentClass).ensureIndex(index)
+                                    .doOnNext(name -> log.info("{} index 확인: {}", documentClass.getSimpleName(), name))
+                                    .onErrorResume(e -> {
+                                        log.error("{} index 생성 실패 {}: {}", documentClass.getSimpleName(), index.getIndexKeys(), e.getMessage());
+                                        return Mono.empty();
+                                    }))
+                            .then(verifyTtlIndexes(documentClass, indexes));
+                })
+                .blockLast();
+    }
+
+    /*
+     * document class에 선언된 TTL index가 같은 key의 TTL index로 있는지 확인. 같은 key에 TTL이 아닌 index가 먼저 있으면
+     * ensureIndex가 실패하므로 여기서 걸림
+     */
+    private Mono<Void> verifyTtlIndexes(Class<?> documentClass, List<IndexDefinition> indexes) {
+        List<List<String>> ttlKeys = indexes.stream()
+                .filter(index -> index.getIndexOptions().containsKey(EXPIRE_AFTER_SECONDS))
+                .<List<String>>map(index -> new ArrayList<>(index.getIndexKeys().keySet()))
+                .collect(Collectors.toList());
+        if (ttlKeys.isEmpty()) {
+            return Mono.empty();
+        }
+        return reactiveMongoTemplate.indexOps(documentClass).getIndexInfo()
+                .filter(indexInfo -> indexInfo.getExpireAfter().isPresent())
+                .map(indexInfo -> indexInfo.getIndexFields().stream()
+                        .map(IndexField::getKey)
+                        .collect(Collectors.toList()))
+                .collectList()
+                .<Void>flatMap(existing -> {
+                    List<List<String>> missing = ttlKeys.stream()
+                            .filter(keys -> !existing.contains(keys))
+                            .collect(Collectors.toList());
+                    if (!missing.isEmpty()) {
+                        return Mono.error(new IllegalStateException(
+                                documentClass.getSimpleName() + " TTL index가 없습니다: " + missing));
+                    }
+                    log.info("{} TTL index 확인: {}", documentClass.getSimpleName(), ttlKeys);
+                    return Mono.empty();
+                });
+    }
+}
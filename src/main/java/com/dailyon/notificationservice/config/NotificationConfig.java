@@ -8,8 +8,25 @@ public class NotificationConfig {
     public static final Long NOTIFICATION_STREAM_TTL = 5 * 60 * 1000L; // ms단위 5분
 
     public static final String MEMBER_NOTIFICATION_CONNECTION_CHANNEL = "memberNotificationConnection";
+    // 전체 member 대상 알림. 모든 인스턴스가 구독해서 각자 연결된 member에게 보냄
+    public static final String BROADCAST_NOTIFICATION_CHANNEL = "notification:broadcast";
 
     public static final String CONSUMER_GROUP_NAME = "notification-group";
     public static final String UNIQUE_CONSUMER_IDENTIFIER = CONSUMER_GROUP_NAME + "-" + UUID.randomUUID();
     public static final String AUCTION_REDIS_KEY = "auction";
+
+    // memberId -> SSE 연결을 가진 인스턴스(UNIQUE_CONSUMER_IDENTIFIER) directory
+    public static final String CONNECTION_DIRECTORY_KEY_PREFIX = "notification:connection:";
+    // 인스턴스별 미연결 알림 inbox stream. 자기 인스턴스에 연결된 member 대상 알림만 들어옴
+    public static final String INSTANCE_INBOX_STREAM_KEY = NOTIFICATIONS_STREAM_KEY + ":" + UNIQUE_CONSUMER_IDENTIFIER;
+
+    // SQS message id -> 처리 진행 상황 (중복 수신시 이어서 처리)
+    public static final String INGESTION_RECORD_KEY_PREFIX = "notification:ingestion:";
+
+    // memberId -> 안읽은 알림 수 (user_notification.unreadCount의 read-through 사본)
+    public static final String UNREAD_COUNT_KEY_PREFIX = "notification:unread-count:";
+
+    public static String instanceInboxStreamKey(String instanceId) {
+        return NOTIFICATIONS_STREAM_KEY + ":" + instanceId;
+    }
 }
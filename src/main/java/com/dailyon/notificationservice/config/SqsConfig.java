@@ -5,6 +5,7 @@ import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.sqs.AmazonSQSAsync;
 import com.amazonaws.services.sqs.AmazonSQSAsyncClientBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.aws.messaging.config.SimpleMessageListenerContainerFactory;
 import org.springframework.cloud.aws.messaging.core.QueueMessagingTemplate;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.context.annotation.Bean;
@@ -43,4 +44,14 @@ public class SqsConfig {
         return new QueueMessagingTemplate(amazonSQSAsync);
     }
 
+    // poll 한 번에 최대 10개(SQS 상한)를 long polling으로 받아옴. 받은 message는 NotificationIngestionPipeline이 queue별 batch로 묶음
+    @Bean
+    public SimpleMessageListenerContainerFactory simpleMessageListenerContainerFactory(AmazonSQSAsync amazonSQSAsync) {
+        SimpleMessageListenerContainerFactory factory = new SimpleMessageListenerContainerFactory();
+        factory.setAmazonSqs(amazonSQSAsync);
+        factory.setMaxNumberOfMessages(10);
+        factory.setWaitTimeOut(20);
+        return factory;
+    }
+
 }
\ No newline at end of file
@@ -2,17 +2,19 @@ package com.dailyon.notificationservice.domain.notification.api;
 
 import com.dailyon.notificationservice.domain.notification.api.request.EnrollRestockRequest;
 import com.dailyon.notificationservice.domain.notification.document.NotificationTemplate;
-import com.dailyon.notificationservice.domain.notification.dto.HeartbeatServerSentEvent;
 import com.dailyon.notificationservice.domain.notification.dto.NotificationData;
-import com.dailyon.notificationservice.domain.notification.dto.WelcomeServerSentEvent;
+import com.dailyon.notificationservice.domain.notification.dto.NotificationPage;
 import com.dailyon.notificationservice.domain.notification.service.NotificationService;
 import com.dailyon.notificationservice.domain.notification.service.RedisPubSubService;
 import com.dailyon.notificationservice.domain.notification.service.SseNotificationService;
+import com.dailyon.notificationservice.domain.notification.sse.SseFrame;
+import com.dailyon.notificationservice.domain.notification.sse.SseFrameEncoder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.aws.messaging.core.QueueMessagingTemplate;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
-import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -24,7 +26,6 @@ import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
 
 import javax.validation.Valid;
-import java.time.Duration;
 
 @Slf4j
 @RestController
@@ -35,6 +36,7 @@ public class NotificationApiController {
     private final NotificationService notificationService;
     private final SseNotificationService sseNotificationService;
     private final RedisPubSubService redisPubSubService;
+    private final SseFrameEncoder sseFrameEncoder;
     // SQS 발행 테스트용 임시 코드
 //    private final QueueMessagingTemplate queueMessagingTemplate;
 //    private final String notificationQueue = "order-complete-notification-queue";
@@ -52,10 +54,13 @@ public class NotificationApiController {
         return notificationService.getRecentNotifications(memberId);
     }
 
-    // 모든 알림 조회 - 테스트완료
+    // 모든 알림 조회. 최신순, 응답의 nextCursor를 다음 요청의 cursor로 넘김
     @GetMapping("/all")
-    public Flux<NotificationData> getAllNotifications(@RequestHeader Long memberId) {
-        return notificationService.getAllNotifications(memberId);
+    public Mono<NotificationPage> getAllNotifications(
+            @RequestHeader Long memberId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return notificationService.getAllNotifications(memberId, cursor, size);
     }
 
     // 안읽은 알림 개수 받기 - 테스트완료
@@ -97,29 +102,34 @@ public class NotificationApiController {
         return notificationService.createOrUpdateRestockNotification(memberId, enrollRestockRequest);
     }
 
+    // 재입고 알림 신청 해제
+    @DeleteMapping("/restock/{productId}/{sizeId}")
+    public Mono<Void> cancelRestockNotification(
+            @PathVariable Long productId, @PathVariable Long sizeId, @RequestHeader Long memberId) {
+        return notificationService.cancelRestockNotification(memberId, productId, sizeId);
+    }
+
     // 구독하기 - 테스트완료 (SQS와 통합한 테스트 - 완료)
+    // 미리 인코딩된 SSE frame을 그대로 쓰고 frame마다 flush. heartbeat는 SseHeartbeatScheduler가 같은 연결로 송신함
     @GetMapping(value = "/subscription", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<ServerSentEvent<NotificationData>> subscribeToNotifications(@RequestHeader Long memberId) {
+    public Mono<Void> subscribeToNotifications(@RequestHeader Long memberId, ServerHttpResponse response) {
         log.info("SSE 연결 시작" + "memberId: " + memberId);
+        response.getHeaders().setContentType(MediaType.TEXT_EVENT_STREAM);
+
+        Flux<SseFrame> welcomeFlux = Flux.just(sseFrameEncoder.welcomeFrame());
 
-        Flux<ServerSentEvent<NotificationData>> welcomeFlux = Flux.just(WelcomeServerSentEvent.getInstance());
-        
-        Flux<ServerSentEvent<NotificationData>> notificationFlux = sseNotificationService.streamNotifications(memberId)
+        Flux<SseFrame> notificationFlux = sseNotificationService.streamNotifications(memberId)
                 .doOnCancel(() -> log.info("Notification stream 취소 - memberId: {}", memberId))
                 .doFinally(signalType -> log.info("signal type {} 와 함께 Notification stream 종료 memberId: {}", signalType, memberId));
 
-//        log.info("Notification stream Flux 생성됨 - memberId: {}", memberId);
-
         redisPubSubService.publishMemberConnection(memberId).subscribe();
 
-        Flux<ServerSentEvent<NotificationData>> heartbeatFlux = Flux.interval(Duration.ofSeconds(15))
-                .take(80) // 20분 송신 후 객체 정리 - 45초동안 연결없으면 client에서 자동으로 재연결
-                .map(tick -> HeartbeatServerSentEvent.getInstance())
-                .doOnNext(tick -> log.info("Heartbeat event sent - memberId: {}", memberId));
-
-        return Flux.concat(welcomeFlux, Flux.merge(notificationFlux, heartbeatFlux))
+        Flux<Flux<DataBuffer>> frames = Flux.concat(welcomeFlux, notificationFlux)
                 .doOnError(e -> log.error("Error in SSE stream for member {}: {}", memberId, e.getMessage(), e))
-                .doOnTerminate(() -> log.info("SSE stream for member {} 종료", memberId));
+                .doOnTerminate(() -> log.info("SSE stream for member {} 종료", memberId))
+                .map(frame -> Flux.just(frame.toDataBuffer(response.bufferFactory())));
+
+        return response.writeAndFlushWith(frames);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.dailyon.notificationservice.domain.notification.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 대상이 정해진 broadcast(targeted=true)의 대상 member 일부. fan-out chunk 하나당 document 하나.
+ * 조회시 broadcastId와 memberId로 대상인지 확인한다.
+ */
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "broadcast_audience_bucket")
+@CompoundIndex(name = "broadcast_audience_member_idx", def = "{'broadcastId' : 1, 'memberIds' : 1}")
+public class BroadcastAudienceBucket {
+
+    @Id
+    private String id;
+
+    private String broadcastId; // BroadcastNotification id
+
+    @Builder.Default private List<Long> memberIds = new ArrayList<>();
+
+    // BroadcastNotification.expireAt과 같음
+    @Indexed(expireAfterSeconds = 0)
+    private Instant expireAt;
+}
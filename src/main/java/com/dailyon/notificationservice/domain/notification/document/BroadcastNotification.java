@@ -0,0 +1,46 @@
+package com.dailyon.notificationservice.domain.notification.document;
+
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * 전체 member 대상 알림(whoToNotify 없음), 또는 대상이 아주 많은 알림. 알림 하나당 document 하나만 저장하고,
+ * member별 member_inbox에는 조회할 때 broadcastSeenAt 이후의 것만 합쳐 넣는다.
+ */
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "notification_broadcast")
+public class BroadcastNotification {
+
+    @Id
+    private String id;
+
+    // 같은 SQS message가 다시 들어와도 한 번만 저장
+    @Indexed(unique = true, sparse = true)
+    private String messageId;
+
+    private String templateId; // NotificationTemplate id
+    private NotificationType notificationType;
+    private String message; // 최대 notification.inbox.snippet-length 글자
+    private String linkUrl;
+
+    // true면 BroadcastAudienceBucket에 있는 member에게만 합침 (대상이 많은 알림의 SHARED_AUDIENCE fan-out)
+    private boolean targeted;
+
+    @Indexed
+    private Instant createdAt;
+
+    // createdAt + notificationType별 보관 기간. 지나면 TTL index로 삭제됨
+    @Indexed(expireAfterSeconds = 0)
+    private Instant expireAt;
+}
@@ -0,0 +1,25 @@
+package com.dailyon.notificationservice.domain.notification.document;
+
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * MemberInbox에 embed 되는 알림 한 건. template을 다시 조회하지 않고 바로 응답할 수 있도록 필요한 값만 복사해둠.
+ */
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InboxEntry {
+    private String templateId; // NotificationTemplate id
+    private NotificationType notificationType;
+    private String message; // 최대 notification.inbox.snippet-length 글자
+    private String linkUrl;
+    private Instant createdAt;
+    private boolean read;
+}
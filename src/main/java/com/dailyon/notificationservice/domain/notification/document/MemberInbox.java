@@ -0,0 +1,51 @@
+package com.dailyon.notificationservice.domain.notification.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * member별 최근 알림함. entries는 createdAt 최신순으로 정렬된 capped 배열이고,
+ * capacity를 넘은 오래된 entry는 MemberInboxOverflow로 옮겨진다.
+ * 최근 알림 조회는 이 document 하나만 읽으면 됨.
+ */
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "member_inbox")
+public class MemberInbox {
+
+    @Id
+    private String id;
+
+    @Indexed(unique = true)
+    private Long memberId;
+
+    // 최신순. $push $each $sort로만 추가하고, capacity를 넘은 entry는 InboxCompactor가 overflow로 옮긴 뒤 자름
+    @Builder.Default private List<InboxEntry> entries = new ArrayList<>();
+
+    // push 될 때마다 증가. capacity를 넘은 document를 overflow로 옮기는 대상으로 찾는 데 사용 (실제 길이와 다를 수 있음)
+    @Indexed
+    private int entryCount;
+
+    // entries를 바꾸는 모든 연산마다 증가. overflow 이동시 동시 변경 감지에 사용
+    private long revision;
+
+    // user_notification의 기존 알림까지 옮겨졌는지 여부. false면 최근 알림 조회는 기존 user_notification을 사용
+    private boolean migrated;
+
+    // 마지막으로 entries에 합친 broadcast의 createdAt. 다음 조회때는 이 시각 - merge-skew 이후의 BroadcastNotification을 읽음
+    private Instant broadcastSeenAt;
+
+    // createdAt이 broadcastSeenAt - merge-skew 이후인 broadcast 중 이미 합쳤거나 대상이 아니라 건너뛴 id. 다시 읽은 broadcast의 중복을 거름
+    private List<String> recentBroadcastIds;
+}
@@ -0,0 +1,41 @@
+package com.dailyon.notificationservice.domain.notification.document;
+
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * MemberInbox의 capacity를 넘어 밀려난 오래된 알림. entry 하나당 document 하나.
+ * id는 memberId:templateId:createdAt(ms)로 고정해서 같은 entry를 여러 번 옮겨도 하나만 남음.
+ */
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "member_inbox_overflow")
+@CompoundIndex(name = "member_inbox_overflow_idx", def = "{'memberId' : 1, 'createdAt' : -1, 'templateId' : -1}")
+public class MemberInboxOverflow {
+
+    @Id
+    private String id;
+
+    private Long memberId;
+    private String templateId;
+    private NotificationType notificationType;
+    private String message;
+    private String linkUrl;
+    private Instant createdAt;
+    private boolean read;
+
+    // createdAt + notificationType별 보관 기간. 지나면 TTL index로 삭제됨
+    @Indexed(expireAfterSeconds = 0)
+    private Instant expireAt;
+}
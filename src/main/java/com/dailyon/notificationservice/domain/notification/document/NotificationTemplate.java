@@ -8,6 +8,7 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.Instant;
 
@@ -27,9 +28,28 @@ public class NotificationTemplate {
 
     private NotificationType notificationType;
 
+    // notificationType, message, linkUrl의 hash. 같은 내용의 template은 하나만 저장 (interning 이전 document에는 없음)
+    @Indexed(unique = true, sparse = true)
+    private String contentHash;
+
     @CreatedDate
     private Instant createdAt;
 
     @LastModifiedDate
     private Instant updatedAt;
+
+    // 이 시각이 지나면 TTL index로 삭제됨. 재사용(interning)될 때마다 notificationType별 보관 기간만큼 연장
+    @Indexed(expireAfterSeconds = 0)
+    private Instant expireAt;
+
+    // 마지막으로 발송/참조된 시각. NotificationRetentionEngine이 참조가 없는 template을 찾을 때 사용
+    @Indexed
+    private Instant lastReferencedAt;
+
+    public void markReferenced(Instant referencedAt, Instant expireAt) {
+        this.lastReferencedAt = referencedAt;
+        if (this.expireAt == null || this.expireAt.isBefore(expireAt)) {
+            this.expireAt = expireAt;
+        }
+    }
 }
\ No newline at end of file
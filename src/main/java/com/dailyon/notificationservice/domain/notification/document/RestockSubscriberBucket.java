@@ -0,0 +1,40 @@
+package com.dailyon.notificationservice.domain.notification.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 재입고 알림 신청자를 (productId, sizeId)별 고정 크기 bucket으로 나눠서 보관.
+ * 신청은 아직 차지 않은 bucket 하나에만 추가하므로 신청자가 많아도 document 하나가 계속 커지지 않음.
+ */
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "restock_subscriber_bucket")
+@CompoundIndexes({
+        @CompoundIndex(name = "restock_subscriber_open_bucket_idx", def = "{'productId' : 1, 'sizeId' : 1, 'count' : 1}"),
+        @CompoundIndex(name = "restock_subscriber_member_idx", def = "{'productId' : 1, 'sizeId' : 1, 'memberIds' : 1}")
+})
+public class RestockSubscriberBucket {
+
+    @Id
+    private String id;
+
+    private Long productId;
+    private Long sizeId;
+
+    @Builder.Default private Set<Long> memberIds = new HashSet<>();
+
+    // memberIds.size()와 같게 유지. notification.restock.bucket-size보다 작으면 신청을 더 받음
+    private int count;
+}
@@ -36,27 +36,8 @@ public class UserNotification {
     @Builder.Default private Set<String> read = new HashSet<>();
     @Builder.Default private Set<String> deleted = new HashSet<>(); // deleted를 보관하는게 의미없어서 로직에서 제거했음.
 
-    public void markAsRead(String notificationId) {
-        unread.remove(notificationId);
-        read.add(notificationId);
-    }
-
-    // unread -> read
-    public void markAsReadAllNotifications() {
-        read.addAll(unread);
-        unread.clear();
-    }
-
-    public void deleteNotification(String notificationId) {
-        unread.remove(notificationId);
-        read.remove(notificationId);
-//        deleted.add(notificationId);
-    }
-
-    public void deleteAllNotifications() {
-//        deleted.addAll(unread);
-//        deleted.addAll(read);
-        unread.clear();
-        read.clear();
-    }
-}
\ No newline at end of file
+    // unread.size()와 항상 같게 유지. /count는 이 필드만 읽음
+    // index는 UnreadCountService.reconcile이 아직 채워지지 않은(필드가 없는) document를 찾는 데 사용
+    @Indexed
+    private int unreadCount;
+}
@@ -13,7 +13,8 @@ public enum NotificationType {
     GIFT_RECEIVED("선물", "선물을 받았습니다."),
     POINTS_EARNED_SNS("SNS 구매유도 포인트 적립", "SNS를 통해 포인트가 적립되었습니다."),
     HEARTBEAT("하트비트", "연결 유지용 주기적 송신."),
-    WELCOME("웰컴메세지", "최초 접속 메세지");
+    WELCOME("웰컴메세지", "최초 접속 메세지"),
+    NOTIFICATION_SUMMARY("알림 요약", "밀린 SSE 알림을 묶어서 송신.");
     // 정의하면서 넣을 예정
 
     private final String name;
@@ -0,0 +1,11 @@
+package com.dailyon.notificationservice.domain.notification.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor(staticName = "of")
+public class IngestedMessage {
+    private String messageId; // SQS MessageId. 재전송되어도 같은 값
+    private String body;
+}
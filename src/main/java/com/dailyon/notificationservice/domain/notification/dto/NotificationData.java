@@ -3,12 +3,11 @@ package com.dailyon.notificationservice.domain.notification.dto;
 import com.dailyon.notificationservice.domain.notification.document.NotificationTemplate;
 import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
 import com.dailyon.notificationservice.domain.notification.dto.RawNotificationData;
+import com.dailyon.notificationservice.domain.notification.message.NotificationMessageRenderer;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 
-import java.text.NumberFormat;
-import java.util.Locale;
 import java.util.Map;
 
 @Data
@@ -31,10 +30,10 @@ public class NotificationData {
                     .build();
     }
 
-    public static NotificationData fromRawData(RawNotificationData rawNotificationData) {
+    public static NotificationData fromRawData(RawNotificationData rawNotificationData, NotificationMessageRenderer messageRenderer) {
         // linkUrl, message를 생성/가공
         String linkUrl = generateLinkUrl(rawNotificationData.getNotificationType(), rawNotificationData.getParameters());
-        String message = generateMessage(rawNotificationData.getNotificationType(),
+        String message = messageRenderer.render(rawNotificationData.getNotificationType(),
                 rawNotificationData.getParameters(),
                 rawNotificationData.getMessage());
 
@@ -67,59 +66,4 @@ public class NotificationData {
                 return ""; // 매칭 안되면 빈문자열로 처리. FE에서 빈문자열일때 href를 주지않음.
         }
     }
-
-    private static String generateMessage(NotificationType notificationType, Map<String, String> parameters, String defaultMessage) {
-        if (defaultMessage != null && !defaultMessage.isEmpty()) {
-            // 알림을 생성하는 micro-service에서 메세지를 직접 주면 그대로 넣어서 보냄.
-            return defaultMessage;
-        }
-
-        String orderId = parameters.getOrDefault("orderId", "");
-        String totalAmount = parameters.getOrDefault("totalAmount", "");
-        String productName = parameters.getOrDefault("productName", "");
-
-        String cancelAmount = parameters.getOrDefault("cancelAmount", "");;
-        String productQuantity = parameters.getOrDefault("productQuantity", "");;
-
-        String sizeName = parameters.getOrDefault("sizeName", "");
-        String productId = parameters.getOrDefault("productId", "");
-        String pointEarned = parameters.getOrDefault("pointEarned", "");
-        String nickname = parameters.getOrDefault("nickname", "");
-
-        switch (notificationType) {
-            case PRODUCT_RESTOCK:
-                return String.format("%s 상품의 %s 사이즈가 재입고되었습니다. \n지금 확인해보세요!", productName, sizeName);
-            case ORDER_COMPLETE:
-                String formattedTotalAmount = "";
-                if (!totalAmount.isEmpty()) {
-                    formattedTotalAmount = formatCurrency(totalAmount);
-                    String orderCompletePostfix = "주문금액: " + formattedTotalAmount + "원";
-                    return String.format("주문번호: %s 의 주문이 완료되었습니다.\n %s", orderId, orderCompletePostfix);
-                } else {
-                    return String.format("주문번호: %s 의 주문이 완료되었습니다.", orderId);
-                }
-            case ORDER_SHIPPED:
-                return String.format("주문번호: %s 의 배송이 시작되었습니다.", orderId);
-            case ORDER_ARRIVED:
-                return String.format("주문번호: %s 의 배송이 완료되었습니다.", orderId);
-            case ORDER_CANCELED:
-                return String.format("주문이 취소되었습니다. \n 환불금액: %s, 상품명: %s, 개수: %s", cancelAmount, productName, productQuantity);
-            case GIFT_RECEIVED:
-                String giftPrefix = !nickname.isEmpty() ? nickname + "님을 위한 " : "";
-                return String.format("%s선물이 도착했습니다. \n선물함을 확인해주세요.", giftPrefix);
-            case POINTS_EARNED_SNS:
-                return String.format("OOTD 게시글을 통한 상품 판매로 포인트가 적립되었습니다: %sP", pointEarned);
-            case AUCTION_END:
-                return "참여하신 경매가 종료되었습니다. 결과를 확인해주세요.";
-            default:
-                return "";
-        }
-
-    }
-
-    private static String formatCurrency(String amount) {
-        long parsedAmount = Long.parseLong(amount);
-        NumberFormat numberFormat = NumberFormat.getNumberInstance(Locale.KOREA);
-        return numberFormat.format(parsedAmount);
-    }
-}
\ No newline at end of file
+}
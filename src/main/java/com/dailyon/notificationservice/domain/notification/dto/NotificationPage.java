@@ -0,0 +1,18 @@
+package com.dailyon.notificationservice.domain.notification.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * /notifications/all 응답. nextCursor를 다음 요청의 cursor로 넘기면 이어서 조회함. 마지막 페이지면 null.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class NotificationPage {
+    private List<NotificationData> notifications;
+    private String nextCursor;
+}
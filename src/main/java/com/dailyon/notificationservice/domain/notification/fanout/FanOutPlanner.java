@@ -0,0 +1,86 @@
+package com.dailyon.notificationservice.domain.notification.fanout;
+
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 대상 수와 NotificationType으로 fan-out 방식을 고르고, 고른 방식과 실제 비용(쓴 document 수, 걸린 시간)을 기록한다.
+ * 주문 알림처럼 대상이 적으면 PER_MEMBER_WRITE, chunked-threshold 이상이면 CHUNKED_WRITE,
+ * shared-audience-threshold 이상이면 SHARED_AUDIENCE. notification.fanout.strategies에 지정된 type은 그 방식으로 고정.
+ */
+@Slf4j
+@Component
+public class FanOutPlanner {
+    private final FanOutProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    // strategy 태그만 있는 meter는 생성할 때 한 번만 등록
+    private final Map<FanOutStrategy, DistributionSummary> audienceSizes = new EnumMap<>(FanOutStrategy.class);
+    private final Map<FanOutStrategy, Counter> writtenDocuments = new EnumMap<>(FanOutStrategy.class);
+    private final Map<FanOutStrategy, Timer> durations = new EnumMap<>(FanOutStrategy.class);
+
+    public FanOutPlanner(FanOutProperties properties, MeterRegistry meterRegistry) {
+        this.properties = Objects.requireNonNull(properties);
+        this.meterRegistry = Objects.requireNonNull(meterRegistry);
+        for (FanOutStrategy strategy : FanOutStrategy.values()) {
+            audienceSizes.put(strategy, DistributionSummary.builder("notification.fanout.audience.size")
+                    .description("fan-out 방식을 고를 때의 대상 member 수")
+                    .tag("strategy", strategy.name())
+                    .register(meterRegistry));
+            writtenDocuments.put(strategy, Counter.builder("notification.fanout.writes")
+                    .description("fan-out으로 쓴 document 수")
+                    .tag("strategy", strategy.name())
+                    .register(meterRegistry));
+            durations.put(strategy, Timer.builder("notification.fanout.duration")
+                    .description("저장부터 발송까지 fan-out 한 번에 걸린 시간")
+                    .tag("strategy", strategy.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    public FanOutStrategy plan(NotificationType notificationType, long audienceSize) {
+        FanOutStrategy strategy = choose(notificationType, audienceSize);
+        Counter.builder("notification.fanout.plans")
+                .description("선택된 fan-out 방식별 알림 수")
+                .tag("type", notificationType.name())
+                .tag("strategy", strategy.name())
+                .register(meterRegistry)
+                .increment();
+        audienceSizes.get(strategy).record(audienceSize);
+        return strategy;
+    }
+
+    /**
+     * fan-out 한 번의 비용. writes는 user_notification, member_inbox, audience bucket 등에 쓴 document 수.
+     */
+    public void recordCost(NotificationType notificationType, FanOutStrategy strategy, long audienceSize, long writes, long elapsedNanos) {
+        writtenDocuments.get(strategy).increment(writes);
+        durations.get(strategy).record(elapsedNanos, TimeUnit.NANOSECONDS);
+        log.debug("{} fan-out {} - 대상: {}, 쓰기: {}건, {}ms", notificationType, strategy, audienceSize, writes,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+    }
+
+    private FanOutStrategy choose(NotificationType notificationType, long audienceSize) {
+        FanOutStrategy fixed = properties.getStrategies().get(notificationType);
+        if (fixed != null) {
+            return fixed;
+        }
+        if (audienceSize >= properties.getSharedAudienceThreshold()) {
+            return FanOutStrategy.SHARED_AUDIENCE;
+        }
+        if (audienceSize >= properties.getChunkedThreshold()) {
+            return FanOutStrategy.CHUNKED_WRITE;
+        }
+        return FanOutStrategy.PER_MEMBER_WRITE;
+    }
+}
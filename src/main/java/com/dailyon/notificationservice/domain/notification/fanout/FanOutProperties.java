@@ -0,0 +1,27 @@
+package com.dailyon.notificationservice.domain.notification.fanout;
+
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "notification.fanout")
+public class FanOutProperties {
+    // 대상을 목록으로 만들지 않고 흘려보내는 알림(재입고 등)에서 bulkWrite, SSE/stream 발송을 묶는 member 수
+    private int chunkSize = 1000;
+    // 동시에 처리하는 chunk 수. 메모리에는 최대 chunkSize * chunkConcurrency명만 올라감
+    private int chunkConcurrency = 4;
+    // 대상이 이 수 이상이면 CHUNKED_WRITE
+    private long chunkedThreshold = 1000;
+    // 대상이 이 수 이상이면 SHARED_AUDIENCE
+    private long sharedAudienceThreshold = 50000;
+    // NotificationType별로 방식을 고정. 없으면 대상 수로 결정
+    private Map<NotificationType, FanOutStrategy> strategies = new EnumMap<>(NotificationType.class);
+}
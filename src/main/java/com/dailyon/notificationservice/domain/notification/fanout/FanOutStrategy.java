@@ -0,0 +1,13 @@
+package com.dailyon.notificationservice.domain.notification.fanout;
+
+/**
+ * 알림 하나를 대상 member에게 저장/발송하는 방식. FanOutPlanner가 대상 수와 NotificationType으로 고른다.
+ */
+public enum FanOutStrategy {
+    // 대상 전체의 user_notification, member_inbox를 bulkWrite 한 번씩으로 갱신한 뒤 발송
+    PER_MEMBER_WRITE,
+    // 대상을 chunk-size명씩 읽으면서 chunk마다 bulkWrite 후 바로 발송. 메모리에는 chunk만 올라감
+    CHUNKED_WRITE,
+    // member별로 쓰지 않고 대상 목록을 chunk 단위 bucket으로 한 번 저장. 알림함은 조회할 때 합침 (BroadcastService.merge)
+    SHARED_AUDIENCE
+}
@@ -0,0 +1,178 @@
+package com.dailyon.notificationservice.domain.notification.infra.message;
+
+import com.dailyon.notificationservice.domain.notification.dto.IngestedMessage;
+import com.dailyon.notificationservice.domain.notification.service.NotificationProcessingService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * NotificationQueueProperties에 선언된 queue들이 공유하는 ingestion pipeline.
+ * queue마다 message를 batch로 묶고(batch-size 또는 max-wait), 공유 in-flight 허용량(PriorityPermits)을 priority 순으로 받아서 처리한다.
+ * queue별 buffer-capacity만큼 쌓이면 listener 스레드가 대기하므로 SQS polling도 멈춤.
+ * batch 처리가 끝나면 처리를 마친 message만 DeleteMessageBatch(최대 10개씩)로 함께 삭제함.
+ * 실패한 message는 삭제하지 않으므로 visibility timeout 뒤 다시 수신되어 ingestion 기록으로 이어서 처리됨.
+ */
+@Slf4j
+@Component
+public class NotificationIngestionPipeline {
+    // listener 스레드 여러 개가 같은 sink로 emit 하므로 동시 emit 충돌은 재시도
+    private static final Sinks.EmitFailureHandler RETRY_NON_SERIALIZED =
+            (signalType, emitResult) -> emitResult == Sinks.EmitResult.FAIL_NON_SERIALIZED;
+
+    private final NotificationProcessingService notificationProcessingService;
+    private final SqsMessageDeleter sqsMessageDeleter;
+    private final PriorityPermits permits;
+    private final Duration maxWait;
+    private final Map<String, QueuePipeline> pipelines = new HashMap<>();
+
+    public NotificationIngestionPipeline(
+            NotificationProcessingService notificationProcessingService,
+            SqsMessageDeleter sqsMessageDeleter,
+            NotificationQueueProperties queueProperties,
+            MeterRegistry meterRegistry) {
+        this.notificationProcessingService = notificationProcessingService;
+        this.sqsMessageDeleter = sqsMessageDeleter;
+        this.permits = new PriorityPermits(queueProperties.getMaxInFlight());
+        this.maxWait = queueProperties.getMaxWait();
+
+        Gauge.builder("notification.ingestion.permits.available", permits, PriorityPermits::available)
+                .description("공유 in-flight 허용량 중 남은 수")
+                .register(meterRegistry);
+        queueProperties.getQueues().forEach((queueName, spec) ->
+                pipelines.put(queueName, new QueuePipeline(queueName, spec, meterRegistry)));
+    }
+
+    public void submit(String queueName, String messageId, String receiptHandle, String message) {
+        QueuePipeline pipeline = pipelines.get(queueName);
+        if (pipeline == null) {
+            // 삭제하지 않으면 visibility timeout 뒤 다시 수신됨
+            log.error("등록되지 않은 queue의 message 입니다: {}", queueName);
+            return;
+        }
+        pipeline.submit(new PendingMessage(IngestedMessage.of(messageId, message), receiptHandle));
+    }
+
+    private final class QueuePipeline {
+        private final String queueName;
+        private final NotificationQueueProperties.QueueSpec spec;
+        private final Semaphore admission;
+        private final Sinks.Many<PendingMessage> sink = Sinks.many().unicast().onBackpressureBuffer();
+
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Counter completed;
+        private final DistributionSummary batchSizes;
+
+        QueuePipeline(String queueName, NotificationQueueProperties.QueueSpec spec, MeterRegistry meterRegistry) {
+            this.queueName = queueName;
+            this.spec = spec;
+            this.admission = new Semaphore(Math.max(1, spec.getBufferCapacity()));
+
+            Tags tags = Tags.of("queue", queueName, "type", String.valueOf(spec.getNotificationType()));
+            Gauge.builder("notification.ingestion.queued", queued, AtomicInteger::get)
+                    .description("처리 대기 중인 message 수")
+                    .tags(tags)
+                    .register(meterRegistry);
+            Gauge.builder("notification.ingestion.in.flight", inFlight, AtomicInteger::get)
+                    .description("처리 중인 message 수")
+                    .tags(tags)
+                    .register(meterRegistry);
+            this.completed = Counter.builder("notification.ingestion.completed")
+                    .description("처리 완료(ack)된 message 수")
+                    .tags(tags)
+                    .register(meterRegistry);
+            this.batchSizes = DistributionSummary.builder("notification.ingestion.batch.size")
+                    .description("한 번에 처리한 SQS message 수")
+                    .tags(tags)
+                    .register(meterRegistry);
+
+            int batchSize = Math.max(1, spec.getBatchSize());
+            int batchConcurrency = Math.max(1, spec.getMaxInFlight() / batchSize);
+            sink.asFlux()
+                    .bufferTimeout(batchSize, maxWait)
+                    // bufferTimeout은 timer로 내보낼 때 downstream 요청이 없으면 에러를 내므로 여기서 받아둠 (admission으로 상한이 정해져 있음)
+                    .onBackpressureBuffer()
+                    .flatMap(this::processBatch, batchConcurrency)
+                    .subscribe(null, error -> log.error("{} ingestion pipeline 종료: {}", queueName, error.getMessage(), error));
+        }
+
+        void submit(PendingMessage pending) {
+            try {
+                admission.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queued.incrementAndGet();
+            sink.emitNext(pending, RETRY_NON_SERIALIZED);
+        }
+
+        private Mono<Void> processBatch(List<PendingMessage> batch) {
+            int size = batch.size();
+            List<IngestedMessage> messages = batch.stream()
+                    .map(pending -> pending.message)
+                    .collect(Collectors.toList());
+
+            // 허용량을 받은 뒤에만 돌려줌. 대기 중에 취소되면 PriorityPermits가 대기열에서 뺌
+            AtomicBoolean acquired = new AtomicBoolean();
+            return permits.acquire(spec.getPriority(), size)
+                    .doOnSuccess(granted -> acquired.set(true))
+                    .then(Mono.defer(() -> {
+                        queued.addAndGet(-size);
+                        inFlight.addAndGet(size);
+                        batchSizes.record(size);
+                        return notificationProcessingService.processMessages(messages);
+                    }))
+                    // 처리가 끝난 message만 삭제. 실패했거나 다른 인스턴스가 처리 중인 message는 visibility timeout 뒤 다시 수신됨
+                    .flatMap(finishedIds -> {
+                        Set<String> finished = new HashSet<>(finishedIds);
+                        List<String> receiptHandles = batch.stream()
+                                .filter(pending -> finished.contains(pending.message.getMessageId()))
+                                .map(pending -> pending.receiptHandle)
+                                .collect(Collectors.toList());
+                        return sqsMessageDeleter.delete(queueName, receiptHandles)
+                                .doOnSuccess(done -> completed.increment(receiptHandles.size()));
+                    })
+                    .doOnError(error -> log.error("{} 처리 중 에러: {}", queueName, error.getMessage(), error))
+                    .onErrorResume(error -> Mono.empty())
+                    .doFinally(signal -> {
+                        if (acquired.get()) {
+                            inFlight.addAndGet(-size);
+                            permits.release(size);
+                        } else {
+                            queued.addAndGet(-size);
+                        }
+                        // admission은 submit에서 message마다 받았으므로 pipeline을 떠날 때 항상 돌려줌
+                        admission.release(size);
+                    });
+        }
+    }
+
+    private static class PendingMessage {
+        private final IngestedMessage message;
+        private final String receiptHandle;
+
+        PendingMessage(IngestedMessage message, String receiptHandle) {
+            this.message = message;
+            this.receiptHandle = receiptHandle;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.dailyon.notificationservice.domain.notification.infra.message;
+
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 알림 SQS queue 선언. 여기 등록된 queue만 NotificationSQSListener가 구독한다.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "notification.ingestion")
+public class NotificationQueueProperties {
+    // 전체 queue가 공유하는 동시 처리 message 수 상한. 모자라면 priority가 높은 queue부터 배정
+    private int maxInFlight = 100;
+    // batch가 차지 않아도 이 시간이 지나면 처리
+    private Duration maxWait = Duration.ofMillis(50);
+    // queue name -> 설정
+    private Map<String, QueueSpec> queues = new LinkedHashMap<>();
+
+    // @SqsListener value SpEL에서 사용
+    public String[] queueNames() {
+        return queues.keySet().toArray(new String[0]);
+    }
+
+    @Getter
+    @Setter
+    public static class QueueSpec {
+        private NotificationType notificationType;
+        // 이 queue에서 동시에 처리 중일 수 있는 message 수
+        private int maxInFlight = 20;
+        // 높을수록 먼저 처리
+        private int priority = 0;
+        private int batchSize = 10;
+        // 처리 대기 + 처리 중 message 상한. 가득 차면 listener 스레드가 대기해서 SQS polling이 멈춤
+        private int bufferCapacity = 100;
+    }
+}
@@ -6,16 +6,17 @@ import com.dailyon.notificationservice.domain.notification.service.NotificationU
 import com.dailyon.notificationservice.domain.notification.service.SseNotificationService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import org.springframework.cloud.aws.messaging.listener.Acknowledgment;
+import org.springframework.cloud.aws.messaging.listener.QueueMessageHandler;
 import org.springframework.cloud.aws.messaging.listener.SqsMessageDeletionPolicy;
 import org.springframework.cloud.aws.messaging.listener.annotation.SqsListener;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.Headers;
 import org.springframework.messaging.handler.annotation.Payload;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import reactor.core.publisher.Mono;
 
 import java.util.Map;
 
@@ -29,136 +30,22 @@ public class NotificationSQSListener {
     private final NotificationProcessingService notificationProcessingService;
     private final NotificationUtils notificationUtils;
     private final ReactiveStringRedisTemplate stringRedisTemplate;
+    private final NotificationIngestionPipeline notificationIngestionPipeline;
 
 
+    /*
+     * 알림 queue 목록은 notification.ingestion.queues 설정에서 가져옴.
+     * 어느 queue에서 온 message인지는 LogicalResourceId header로 구분해서 queue별 batch/priority/in-flight 설정으로 처리
+     */
     @SqsListener(
-            value = "product-restock-notification-queue",
+            value = "#{@notificationQueueProperties.queueNames()}",
             deletionPolicy = SqsMessageDeletionPolicy.NEVER)
-    public void consumeProductRestockNotificationCheckQueue(
-            @Payload String message, @Headers Map<String, String> headers, Acknowledgment ack) {
-        Mono.just(message)
-                .flatMap(notificationProcessingService::processMessage)
-                .then()
-                .doOnError(error -> {
-                    log.error("product-restock-notification-queue 처리 중 에러: {}", error.getMessage(), error);
-                    ack.acknowledge(); // Acknowledge in case of error
-                })
-                .doOnSuccess(aVoid -> ack.acknowledge()) // Acknowledge on success
-                .subscribe();
-    }
-
-    @SqsListener(
-            value = "order-complete-notification-queue",
-            deletionPolicy = SqsMessageDeletionPolicy.NEVER)
-    public void consumeOrderCompleteNotificationCheckQueue(
-            @Payload String message, @Headers Map<String, String> headers, Acknowledgment ack) {
-            log.info("주문 완료 메세지 도착");
-        Mono.just(message)
-                .flatMap(notificationProcessingService::processMessage)
-                .then()
-                .doOnError(error -> {
-                    log.error("order-complete-notification-queue 처리 중 에러: {}", error.getMessage(), error);
-                    ack.acknowledge(); // Acknowledge in case of error
-                })
-                .doOnSuccess(aVoid -> ack.acknowledge()) // Acknowledge on success
-                .subscribe();
-    }
-
-    @SqsListener(
-            value = "order-shipped-notification-queue",
-            deletionPolicy = SqsMessageDeletionPolicy.NEVER)
-    public void consumeOrderShippedNotificationCheckQueue(
-            @Payload String message, @Headers Map<String, String> headers, Acknowledgment ack) {
-        Mono.just(message)
-                .flatMap(notificationProcessingService::processMessage)
-                .then()
-                .doOnError(error -> {
-                    log.error("order-shipped-notification-queue 처리 중 에러: {}", error.getMessage(), error);
-                    ack.acknowledge(); // Acknowledge in case of error
-                })
-                .doOnSuccess(aVoid -> ack.acknowledge()) // Acknowledge on success
-                .subscribe();
-    }
-
-    @SqsListener(
-            value = "order-arrived-notification-queue",
-            deletionPolicy = SqsMessageDeletionPolicy.NEVER)
-    public void consumeOrderArrivedNotificationCheckQueue(
-            @Payload String message, @Headers Map<String, String> headers, Acknowledgment ack) {
-        Mono.just(message)
-                .flatMap(notificationProcessingService::processMessage)
-                .then()
-                .doOnError(error -> {
-                    log.error("order-arrived-notification-queue 처리 중 에러: {}", error.getMessage(), error);
-                    ack.acknowledge(); // Acknowledge in case of error
-                })
-                .doOnSuccess(aVoid -> ack.acknowledge()) // Acknowledge on success
-                .subscribe();
-    }
-
-
-    @SqsListener(
-            value = "order-canceled-notification-queue",
-            deletionPolicy = SqsMessageDeletionPolicy.NEVER)
-    public void consumeOrderCanceledNotificationCheckQueue(
-            @Payload String message, @Headers Map<String, String> headers, Acknowledgment ack) {
-        Mono.just(message)
-                .flatMap(notificationProcessingService::processMessage)
-                .then()
-                .doOnError(error -> {
-                    log.error("order-canceled-notification-queue 처리 중 에러: {}", error.getMessage(), error);
-                    ack.acknowledge(); // Acknowledge in case of error
-                })
-                .doOnSuccess(aVoid -> ack.acknowledge()) // Acknowledge on success
-                .subscribe();
-    }
-
-    @SqsListener(
-            value = "auction-end-notification-queue",
-            deletionPolicy = SqsMessageDeletionPolicy.NEVER)
-    public void consumeAuctionEndNotificationCheckQueue(
-            @Payload String message, @Headers Map<String, String> headers, Acknowledgment ack) {
-        Mono.just(message)
-                .flatMap(notificationProcessingService::processMessage)
-                .then()
-                .doOnError(error -> {
-                    log.error("auction-end-notification-queue 처리 중 에러: {}", error.getMessage(), error);
-                    ack.acknowledge(); // Acknowledge in case of error
-                })
-                .doOnSuccess(aVoid -> ack.acknowledge()) // Acknowledge on success
-                .subscribe();
-    }
-
-    @SqsListener(
-            value = "gift-received-notification-queue",
-            deletionPolicy = SqsMessageDeletionPolicy.NEVER)
-    public void consumeGiftReceivedNotificationCheckQueue(
-            @Payload String message, @Headers Map<String, String> headers, Acknowledgment ack) {
-        Mono.just(message)
-                .flatMap(notificationProcessingService::processMessage)
-                .then()
-                .doOnError(error -> {
-                    log.error("gift-received-notification-queue 처리 중 에러: {}", error.getMessage(), error);
-                    ack.acknowledge(); // Acknowledge in case of error
-                })
-                .doOnSuccess(aVoid -> ack.acknowledge()) // Acknowledge on success
-                .subscribe();
-    }
-
-    @SqsListener(
-            value = "points-earned-sns-notification-queue",
-            deletionPolicy = SqsMessageDeletionPolicy.NEVER)
-    public void consumePointsEarnedBySNSNotificationCheckQueue(
-            @Payload String message, @Headers Map<String, String> headers, Acknowledgment ack) {
-        Mono.just(message)
-                .flatMap(notificationProcessingService::processMessage)
-                .then()
-                .doOnError(error -> {
-                    log.error("points-earned-sns-notification-queue 처리 중 에러: {}", error.getMessage(), error);
-                    ack.acknowledge(); // Acknowledge in case of error
-                })
-                .doOnSuccess(aVoid -> ack.acknowledge()) // Acknowledge on success
-                .subscribe();
+    public void consumeNotificationQueues(
+            @Payload String message,
+            @Header(QueueMessageHandler.LOGICAL_RESOURCE_ID) String queueName,
+            @Header("MessageId") String messageId, // 재전송되어도 같은 값. 중복 처리 방지에 사용
+            @Header("ReceiptHandle") String receiptHandle) { // 처리 후 DeleteMessageBatch로 묶어서 삭제
+        notificationIngestionPipeline.submit(queueName, messageId, receiptHandle, message);
     }
 
     @SqsListener(
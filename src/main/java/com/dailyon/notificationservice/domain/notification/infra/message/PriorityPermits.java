@@ -0,0 +1,94 @@
+package com.dailyon.notificationservice.domain.notification.infra.message;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * 여러 queue가 나눠 쓰는 in-flight 허용량. 허용량이 모자라면 priority가 높은 요청, 같은 priority면 먼저 온 요청부터 배정한다.
+ * 대기 중에 구독이 취소되면 대기열에서 빼고, 배정과 취소가 겹쳐서 전달되지 못한 허용량은 바로 돌려놓는다.
+ */
+class PriorityPermits {
+    private final int capacity;
+    private int available;
+    private long sequence;
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(
+            Comparator.comparingInt((Waiter waiter) -> -waiter.priority).thenComparingLong(waiter -> waiter.sequence));
+
+    PriorityPermits(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.available = this.capacity;
+    }
+
+    Mono<Void> acquire(int priority, int permits) {
+        int requested = cap(permits);
+        return Mono.create(sink -> {
+            boolean granted = false;
+            synchronized (this) {
+                if (waiters.isEmpty() && available >= requested) {
+                    available -= requested;
+                    granted = true;
+                } else {
+                    Waiter waiter = new Waiter(priority, sequence++, requested, sink);
+                    waiters.add(waiter);
+                    sink.onCancel(() -> cancel(waiter));
+                }
+            }
+            if (granted) {
+                sink.success();
+            }
+        });
+    }
+
+    void release(int permits) {
+        List<MonoSink<Void>> granted = new ArrayList<>();
+        synchronized (this) {
+            available += cap(permits);
+            while (!waiters.isEmpty() && waiters.peek().permits <= available) {
+                Waiter waiter = waiters.poll();
+                available -= waiter.permits;
+                granted.add(waiter.sink);
+            }
+        }
+        // lock 밖에서 다음 처리를 시작
+        granted.forEach(MonoSink::success);
+    }
+
+    private void cancel(Waiter waiter) {
+        boolean waiting;
+        synchronized (this) {
+            waiting = waiters.remove(waiter);
+        }
+        if (!waiting) {
+            // release에서 이미 배정했지만 success 전에 취소됨
+            release(waiter.permits);
+        }
+    }
+
+    synchronized int available() {
+        return available;
+    }
+
+    // capacity보다 큰 batch도 혼자서는 처리될 수 있도록 capacity로 자름
+    private int cap(int permits) {
+        return Math.min(Math.max(1, permits), capacity);
+    }
+
+    private static class Waiter {
+        private final int priority;
+        private final long sequence;
+        private final int permits;
+        private final MonoSink<Void> sink;
+
+        Waiter(int priority, long sequence, int permits, MonoSink<Void> sink) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.permits = permits;
+            this.sink = sink;
+        }
+    }
+}
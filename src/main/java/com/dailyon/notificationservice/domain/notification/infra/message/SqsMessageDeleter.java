@@ -0,0 +1,91 @@
+package com.dailyon.notificationservice.domain.notification.infra.message;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sqs.AmazonSQSAsync;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.GetQueueUrlRequest;
+import com.amazonaws.services.sqs.model.GetQueueUrlResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 처리가 끝난 SQS message를 DeleteMessageBatch로 삭제. 한 번에 최대 10개(SQS 상한)씩 묶음.
+ * 삭제에 실패한 message는 visibility timeout 뒤 다시 수신되고, ingestion 기록(DONE)으로 걸러짐.
+ */
+@Slf4j
+@Component
+public class SqsMessageDeleter {
+    private static final int MAX_BATCH_ENTRIES = 10;
+
+    private final AmazonSQSAsync amazonSQSAsync;
+    // queue name -> queue url. 처음 한 번만 조회
+    private final Map<String, Mono<String>> queueUrls = new ConcurrentHashMap<>();
+
+    public SqsMessageDeleter(AmazonSQSAsync amazonSQSAsync) {
+        this.amazonSQSAsync = Objects.requireNonNull(amazonSQSAsync);
+    }
+
+    public Mono<Void> delete(String queueName, List<String> receiptHandles) {
+        if (receiptHandles.isEmpty()) {
+            return Mono.empty();
+        }
+        return queueUrl(queueName)
+                .flatMapMany(queueUrl -> Flux.fromIterable(partition(receiptHandles))
+                        .flatMap(handles -> deleteBatch(queueUrl, handles)))
+                .doOnNext(result -> result.getFailed().forEach(failed ->
+                        log.warn("{} message 삭제 실패 ({}): {}", queueName, failed.getCode(), failed.getMessage())))
+                .then();
+    }
+
+    private Mono<String> queueUrl(String queueName) {
+        return queueUrls.computeIfAbsent(queueName, name -> Mono.<GetQueueUrlResult>create(sink ->
+                        amazonSQSAsync.getQueueUrlAsync(new GetQueueUrlRequest(name), handler(sink)))
+                .map(GetQueueUrlResult::getQueueUrl)
+                // 실패한 조회는 cache 하지 않음
+                .doOnError(e -> queueUrls.remove(name))
+                .cache());
+    }
+
+    private Mono<DeleteMessageBatchResult> deleteBatch(String queueUrl, List<String> receiptHandles) {
+        List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>(receiptHandles.size());
+        for (int i = 0; i < receiptHandles.size(); i++) {
+            entries.add(new DeleteMessageBatchRequestEntry(String.valueOf(i), receiptHandles.get(i)));
+        }
+        return Mono.create(sink -> amazonSQSAsync.deleteMessageBatchAsync(
+                new DeleteMessageBatchRequest(queueUrl, entries), handler(sink)));
+    }
+
+    private static List<List<String>> partition(List<String> receiptHandles) {
+        List<List<String>> batches = new ArrayList<>();
+        for (int from = 0; from < receiptHandles.size(); from += MAX_BATCH_ENTRIES) {
+            batches.add(receiptHandles.subList(from, Math.min(from + MAX_BATCH_ENTRIES, receiptHandles.size())));
+        }
+        return batches;
+    }
+
+    private static <Q extends AmazonWebServiceRequest, R> AsyncHandler<Q, R> handler(MonoSink<R> sink) {
+        return new AsyncHandler<Q, R>() {
+            @Override
+            public void onError(Exception exception) {
+                sink.error(exception);
+            }
+
+            @Override
+            public void onSuccess(Q request, R result) {
+                sink.success(result);
+            }
+        };
+    }
+}
@@ -0,0 +1,213 @@
+package com.dailyon.notificationservice.domain.notification.message;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * compile 된 메세지 template. 불변이라 여러 thread가 공유함.
+ * 문법
+ * - {name}: parameters의 name 값. 없으면 빈 문자열
+ * - {name:number}: 정수 값을 세 자리마다 ','로 구분 (Locale.KOREA NumberFormat과 같은 결과)
+ * - [ ... ]: 안의 parameter가 하나라도 비어있으면 통째로 생략
+ * - \{ \} \[ \] \\: 문자 그대로
+ * render는 template이 쓰는 parameter만 조회하고, 넘겨받은 StringBuilder에 바로 씀.
+ */
+public final class MessageTemplate {
+    private static final String NUMBER_FORMAT = "number";
+
+    private final String source;
+    private final Segment[] segments;
+    private final Set<String> parameterNames;
+
+    private MessageTemplate(String source, Segment[] segments, Set<String> parameterNames) {
+        this.source = source;
+        this.segments = segments;
+        this.parameterNames = parameterNames;
+    }
+
+    public static MessageTemplate compile(String source) {
+        Deque<List<Segment>> sections = new ArrayDeque<>();
+        sections.push(new ArrayList<>());
+        Set<String> parameterNames = new LinkedHashSet<>();
+        StringBuilder literal = new StringBuilder();
+
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (c == '\\' && i + 1 < source.length() && "{}[]\\".indexOf(source.charAt(i + 1)) >= 0) {
+                literal.append(source.charAt(i + 1));
+                i += 2;
+                continue;
+            }
+            switch (c) {
+                case '{': {
+                    int end = source.indexOf('}', i);
+                    if (end < 0) {
+                        throw invalid(source, i, "닫히지 않은 {");
+                    }
+                    flushLiteral(literal, sections.peek());
+                    sections.peek().add(parameter(source, i, source.substring(i + 1, end), parameterNames));
+                    i = end + 1;
+                    continue;
+                }
+                case '[':
+                    flushLiteral(literal, sections.peek());
+                    sections.push(new ArrayList<>());
+                    break;
+                case ']': {
+                    if (sections.size() == 1) {
+                        throw invalid(source, i, "짝이 없는 ]");
+                    }
+                    flushLiteral(literal, sections.peek());
+                    List<Segment> inner = sections.pop();
+                    sections.peek().add(new OptionalSection(inner.toArray(new Segment[0])));
+                    break;
+                }
+                case '}':
+                    throw invalid(source, i, "짝이 없는 }");
+                default:
+                    literal.append(c);
+            }
+            i++;
+        }
+        if (sections.size() != 1) {
+            throw invalid(source, source.length(), "닫히지 않은 [");
+        }
+        flushLiteral(literal, sections.peek());
+        return new MessageTemplate(source, sections.pop().toArray(new Segment[0]), Collections.unmodifiableSet(parameterNames));
+    }
+
+    public void renderTo(Map<String, String> parameters, StringBuilder out) {
+        for (Segment segment : segments) {
+            segment.appendTo(parameters, out);
+        }
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public Set<String> getParameterNames() {
+        return parameterNames;
+    }
+
+    private static Segment parameter(String source, int position, String spec, Set<String> parameterNames) {
+        int separator = spec.indexOf(':');
+        String name = (separator < 0 ? spec : spec.substring(0, separator)).trim();
+        if (name.isEmpty()) {
+            throw invalid(source, position, "parameter 이름이 비어있음");
+        }
+        parameterNames.add(name);
+        if (separator < 0) {
+            return new Parameter(name);
+        }
+        String format = spec.substring(separator + 1).trim();
+        if (!NUMBER_FORMAT.equals(format)) {
+            throw invalid(source, position, "지원하지 않는 format " + format);
+        }
+        return new NumberParameter(name);
+    }
+
+    private static void flushLiteral(StringBuilder literal, List<Segment> section) {
+        if (literal.length() > 0) {
+            section.add(new Literal(literal.toString()));
+            literal.setLength(0);
+        }
+    }
+
+    private static IllegalArgumentException invalid(String source, int position, String reason) {
+        return new IllegalArgumentException("메세지 template 오류 (" + position + "번째 문자, " + reason + "): " + source);
+    }
+
+    // 정수를 세 자리마다 ','로 구분해서 씀. NumberFormat과 달리 상태가 없어서 thread-safe
+    static void appendGrouped(StringBuilder out, long value) {
+        String digits = Long.toString(value);
+        int start = value < 0 ? 1 : 0;
+        out.append(digits, 0, start);
+        int length = digits.length() - start;
+        int firstGroupEnd = start + (length % 3 == 0 ? 3 : length % 3);
+        out.append(digits, start, firstGroupEnd);
+        for (int i = firstGroupEnd; i < digits.length(); i += 3) {
+            out.append(',').append(digits, i, i + 3);
+        }
+    }
+
+    private interface Segment {
+        // 비어있는 parameter였으면 false
+        boolean appendTo(Map<String, String> parameters, StringBuilder out);
+    }
+
+    private static final class Literal implements Segment {
+        private final String text;
+
+        Literal(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public boolean appendTo(Map<String, String> parameters, StringBuilder out) {
+            out.append(text);
+            return true;
+        }
+    }
+
+    private static class Parameter implements Segment {
+        final String name;
+
+        Parameter(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean appendTo(Map<String, String> parameters, StringBuilder out) {
+            String value = parameters.get(name);
+            if (value == null || value.isEmpty()) {
+                return false;
+            }
+            append(value, out);
+            return true;
+        }
+
+        void append(String value, StringBuilder out) {
+            out.append(value);
+        }
+    }
+
+    private static final class NumberParameter extends Parameter {
+        NumberParameter(String name) {
+            super(name);
+        }
+
+        // 숫자가 아니면 NumberFormatException (기존 formatCurrency와 같음)
+        @Override
+        void append(String value, StringBuilder out) {
+            appendGrouped(out, Long.parseLong(value));
+        }
+    }
+
+    private static final class OptionalSection implements Segment {
+        private final Segment[] segments;
+
+        OptionalSection(Segment[] segments) {
+            this.segments = segments;
+        }
+
+        @Override
+        public boolean appendTo(Map<String, String> parameters, StringBuilder out) {
+            int mark = out.length();
+            for (Segment segment : segments) {
+                if (!segment.appendTo(parameters, out)) {
+                    out.setLength(mark);
+                    break;
+                }
+            }
+            return true;
+        }
+    }
+}
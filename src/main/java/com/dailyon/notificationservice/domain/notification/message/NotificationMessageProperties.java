@@ -0,0 +1,36 @@
+package com.dailyon.notificationservice.domain.notification.message;
+
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * NotificationType별 메세지 template. 문법은 MessageTemplate 참고.
+ * config server 값을 바꾸고 /actuator/busrefresh 하면 재배포 없이 NotificationMessageRenderer가 다시 compile 함.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "notification.message")
+public class NotificationMessageProperties {
+    // 설정에 없는 type은 아래 기본값 사용. 기본값도 없으면 빈 메세지
+    private Map<NotificationType, String> templates = defaultTemplates();
+
+    private static Map<NotificationType, String> defaultTemplates() {
+        Map<NotificationType, String> templates = new EnumMap<>(NotificationType.class);
+        templates.put(NotificationType.PRODUCT_RESTOCK, "{productName} 상품의 {sizeName} 사이즈가 재입고되었습니다. \n지금 확인해보세요!");
+        templates.put(NotificationType.ORDER_COMPLETE, "주문번호: {orderId} 의 주문이 완료되었습니다.[\n 주문금액: {totalAmount:number}원]");
+        templates.put(NotificationType.ORDER_SHIPPED, "주문번호: {orderId} 의 배송이 시작되었습니다.");
+        templates.put(NotificationType.ORDER_ARRIVED, "주문번호: {orderId} 의 배송이 완료되었습니다.");
+        templates.put(NotificationType.ORDER_CANCELED, "주문이 취소되었습니다. \n 환불금액: {cancelAmount}, 상품명: {productName}, 개수: {productQuantity}");
+        templates.put(NotificationType.GIFT_RECEIVED, "[{nickname}님을 위한 ]선물이 도착했습니다. \n선물함을 확인해주세요.");
+        templates.put(NotificationType.POINTS_EARNED_SNS, "OOTD 게시글을 통한 상품 판매로 포인트가 적립되었습니다: {pointEarned}P");
+        templates.put(NotificationType.AUCTION_END, "참여하신 경매가 종료되었습니다. 결과를 확인해주세요.");
+        return templates;
+    }
+}
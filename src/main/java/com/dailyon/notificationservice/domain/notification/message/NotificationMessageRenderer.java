@@ -0,0 +1,77 @@
+package com.dailyon.notificationservice.domain.notification.message;
+
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * NotificationType별 메세지 생성. 시작할 때 type마다 MessageTemplate을 한 번 compile 해두고,
+ * 메세지마다 template이 쓰는 parameter만 읽어서 thread별로 재사용하는 StringBuilder에 씀.
+ * refresh/busrefresh로 notification.message 설정이 바뀌면 다시 compile 함. 잘못된 template이면 기존 것을 유지.
+ */
+@Slf4j
+@Component
+public class NotificationMessageRenderer {
+    private static final int INITIAL_BUFFER_CAPACITY = 256;
+    // 긴 메세지로 커진 buffer는 thread에 계속 들고 있지 않음
+    private static final int MAX_RETAINED_BUFFER_CAPACITY = 4096;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_BUFFER_CAPACITY));
+
+    private final NotificationMessageProperties properties;
+    private volatile Map<NotificationType, MessageTemplate> templates;
+
+    public NotificationMessageRenderer(NotificationMessageProperties properties) {
+        this.properties = Objects.requireNonNull(properties);
+        // 시작할 때 잘못된 template이면 기동 실패
+        this.templates = compile(properties.getTemplates());
+    }
+
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void recompile() {
+        try {
+            templates = compile(properties.getTemplates());
+            log.info("메세지 template {}개 다시 compile", templates.size());
+        } catch (IllegalArgumentException e) {
+            log.error("메세지 template compile 실패. 기존 template을 유지합니다.", e);
+        }
+    }
+
+    /**
+     * defaultMessage가 있으면 그대로, 없으면 type의 template으로 생성. template이 없는 type은 빈 문자열.
+     */
+    public String render(NotificationType notificationType, Map<String, String> parameters, String defaultMessage) {
+        if (defaultMessage != null && !defaultMessage.isEmpty()) {
+            // 알림을 생성하는 micro-service에서 메세지를 직접 주면 그대로 넣어서 보냄.
+            return defaultMessage;
+        }
+        MessageTemplate template = templates.get(notificationType);
+        if (template == null) {
+            return "";
+        }
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        template.renderTo(parameters != null ? parameters : Collections.emptyMap(), buffer);
+        String message = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_BUFFER_CAPACITY) {
+            BUFFER.set(new StringBuilder(INITIAL_BUFFER_CAPACITY));
+        }
+        return message;
+    }
+
+    private static Map<NotificationType, MessageTemplate> compile(Map<NotificationType, String> sources) {
+        Map<NotificationType, MessageTemplate> compiled = new EnumMap<>(NotificationType.class);
+        sources.forEach((notificationType, source) -> {
+            if (source != null) {
+                compiled.put(notificationType, MessageTemplate.compile(source));
+            }
+        });
+        return compiled;
+    }
+}
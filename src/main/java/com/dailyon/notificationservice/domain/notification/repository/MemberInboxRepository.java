@@ -1,13 +1,12 @@
 package com.dailyon.notificationservice.domain.notification.repository;
 
-
-import com.dailyon.notificationservice.domain.notification.document.RestockNotification;
+import com.dailyon.notificationservice.domain.notification.document.MemberInbox;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
-
 import reactor.core.publisher.Mono;
 
 @Repository
-public interface RestockNotificationRepository extends ReactiveMongoRepository<RestockNotification, String> {
-    Mono<RestockNotification> findByProductIdAndSizeId(Long productId, Long sizeId);
+public interface MemberInboxRepository extends ReactiveMongoRepository<MemberInbox, String> {
+
+    Mono<MemberInbox> findByMemberId(Long memberId);
 }
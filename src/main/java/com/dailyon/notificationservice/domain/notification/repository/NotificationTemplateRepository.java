@@ -10,4 +10,6 @@ import java.util.Collection;
 @Repository
 public interface NotificationTemplateRepository extends ReactiveMongoRepository<NotificationTemplate, String> {
     Flux<NotificationTemplate> findByIdIn(Collection<String> ids);
+
+    Flux<NotificationTemplate> findByContentHashIn(Collection<String> contentHashes);
 }
@@ -0,0 +1,386 @@
+package com.dailyon.notificationservice.domain.notification.retention;
+
+import com.dailyon.notificationservice.domain.notification.document.BroadcastNotification;
+import com.dailyon.notificationservice.domain.notification.document.MemberInbox;
+import com.dailyon.notificationservice.domain.notification.document.NotificationTemplate;
+import com.dailyon.notificationservice.domain.notification.document.UserNotification;
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import com.dailyon.notificationservice.domain.notification.service.NotificationTemplateStore;
+import com.dailyon.notificationservice.domain.notification.service.UnreadCountService;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static com.dailyon.notificationservice.config.NotificationConfig.UNIQUE_CONSUMER_IDENTIFIER;
+
+/**
+ * 알림 보관 기간 관리.
+ * template과 member_inbox_overflow는 저장할 때 notificationType별 expireAt을 기록하고 TTL index로 삭제된다. 이 작업은 그 뒤처리를 한다.
+ * 1. mark: user_notification을 _id 순서로 batch씩 읽어서 참조 중인 template의 lastReferencedAt을 pass 시작 시각으로 올리고,
+ *    TTL로 사라진 template id(dangling)를 unread/read에서 지움. 같은 member의 member_inbox에서 보관 기간이 지난 entry도 지움.
+ *    user_notification을 다 보면 아직 member_inbox에 합쳐지지 않은 broadcast의 template도 _id 순서로 batch씩 mark.
+ * 2. sweep: pass가 끝나면 pass 동안 참조되지 않은 template을 batch씩 삭제 (delete 된 알림만 가리키던 template).
+ * batch 사이에 batch-interval만큼 쉬어서 mongo 부하를 제한하고, 진행 위치는 redis에 저장해서 인스턴스가 바뀌어도 이어서 진행.
+ * TTL index가 지운 document 크기는 mongo가 알려주지 않으므로 bytes.reclaimed에는 이 작업이 지운 것만 집계됨.
+ */
+@Slf4j
+@Component
+public class NotificationRetentionEngine {
+    private static final String CURSOR_KEY = "notification:retention:cursor";
+    private static final String PASS_STARTED_AT_KEY = "notification:retention:pass-started-at";
+    private static final String LOCK_KEY = "notification:retention:lock";
+    private static final String SWEEP_PHASE = "sweep";
+    // broadcast mark 단계의 cursor. 뒤에 마지막으로 본 broadcast id가 붙음
+    private static final String BROADCAST_PHASE_PREFIX = "broadcast:";
+    // BSON 배열의 string 원소 하나 (type, index key, length, null terminator)
+    private static final int ARRAY_ELEMENT_OVERHEAD = 8;
+
+    // 만료 후 다른 인스턴스가 가져간 lock은 지우지 않음
+    private static final RedisScript<Long> RELEASE_LOCK_SCRIPT = RedisScript.of(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final NotificationTemplateStore notificationTemplateStore;
+    private final UnreadCountService unreadCountService;
+    private final NotificationRetentionProperties properties;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Timer passDuration;
+    private final Counter danglingReferencesRemoved;
+    private final Counter expiredEntriesRemoved;
+    private final Counter templatesCollected;
+    // collection 이름 -> bytes.reclaimed counter
+    private final Map<String, Counter> bytesReclaimed = new HashMap<>();
+
+    public NotificationRetentionEngine(
+            ReactiveMongoTemplate reactiveMongoTemplate,
+            ReactiveRedisTemplate<String, String> reactiveRedisTemplate,
+            NotificationTemplateStore notificationTemplateStore,
+            UnreadCountService unreadCountService,
+            NotificationRetentionProperties properties,
+            MeterRegistry meterRegistry) {
+        this.reactiveMongoTemplate = Objects.requireNonNull(reactiveMongoTemplate);
+        this.reactiveRedisTemplate = Objects.requireNonNull(reactiveRedisTemplate);
+        this.notificationTemplateStore = Objects.requireNonNull(notificationTemplateStore);
+        this.unreadCountService = Objects.requireNonNull(unreadCountService);
+        this.properties = Objects.requireNonNull(properties);
+        this.passDuration = Timer.builder("notification.retention.pass.duration")
+                .description("user_notification 전체를 검사하고 template 정리까지 끝내는 데 걸린 시간")
+                .register(meterRegistry);
+        this.danglingReferencesRemoved = Counter.builder("notification.retention.references.removed")
+                .description("user_notification에서 지운 삭제된 template id 수")
+                .register(meterRegistry);
+        this.expiredEntriesRemoved = Counter.builder("notification.retention.inbox.entries.removed")
+                .description("member_inbox에서 지운 보관 기간이 지난 entry 수")
+                .register(meterRegistry);
+        this.templatesCollected = Counter.builder("notification.retention.templates.collected")
+                .description("참조가 없어서 삭제한 template 수")
+                .register(meterRegistry);
+        for (Class<?> documentClass : Arrays.asList(MemberInbox.class, UserNotification.class, NotificationTemplate.class)) {
+            String collectionName = reactiveMongoTemplate.getCollectionName(documentClass);
+            bytesReclaimed.put(collectionName, Counter.builder("notification.retention.bytes.reclaimed")
+                    .description("retention 작업으로 지운 document/배열 원소의 BSON 크기")
+                    .baseUnit("bytes")
+                    .tag("collection", collectionName)
+                    .register(meterRegistry));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${notification.retention.batch-interval-ms:1000}")
+    public void runBatch() {
+        if (!properties.isEnabled() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        // 여러 인스턴스 중 하나만 진행
+        reactiveRedisTemplate.opsForValue().setIfAbsent(LOCK_KEY, UNIQUE_CONSUMER_IDENTIFIER, Duration.ofMinutes(1))
+                .filter(Boolean::booleanValue)
+                .flatMap(locked -> passStartedAt()
+                        .flatMap(passStartedAt -> reactiveRedisTemplate.opsForValue().get(CURSOR_KEY)
+                                .defaultIfEmpty("")
+                                .flatMap(cursor -> runPhase(passStartedAt, cursor)))
+                        .then(reactiveRedisTemplate.execute(RELEASE_LOCK_SCRIPT,
+                                        Collections.singletonList(LOCK_KEY),
+                                        Collections.singletonList(UNIQUE_CONSUMER_IDENTIFIER))
+                                .then()))
+                .doFinally(signal -> running.set(false))
+                .subscribe(null, error -> log.error("알림 retention 작업 중 에러", error));
+    }
+
+    private Mono<Void> runPhase(Instant passStartedAt, String cursor) {
+        if (SWEEP_PHASE.equals(cursor)) {
+            return sweepBatch(passStartedAt);
+        }
+        if (cursor.startsWith(BROADCAST_PHASE_PREFIX)) {
+            String lastId = cursor.substring(BROADCAST_PHASE_PREFIX.length());
+            return markBroadcastBatch(passStartedAt, lastId.isEmpty() ? null : lastId);
+        }
+        return markBatch(passStartedAt, cursor.isEmpty() ? null : cursor);
+    }
+
+    private Mono<Instant> passStartedAt() {
+        String now = String.valueOf(System.currentTimeMillis());
+        return reactiveRedisTemplate.opsForValue().setIfAbsent(PASS_STARTED_AT_KEY, now)
+                .then(reactiveRedisTemplate.opsForValue().get(PASS_STARTED_AT_KEY))
+                .map(value -> Instant.ofEpochMilli(Long.parseLong(value)));
+    }
+
+    private Mono<Void> markBatch(Instant passStartedAt, String cursor) {
+        Query query = (cursor == null ? new Query() : Query.query(Criteria.where("_id").gt(cursor)))
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .limit(properties.getBatchSize());
+        query.fields().include("memberId").include("unread").include("read");
+
+        return reactiveMongoTemplate.find(query, UserNotification.class)
+                .collectList()
+                .flatMap(batch -> {
+                    if (batch.isEmpty()) {
+                        // 전체를 한 번 다 봤으므로 broadcast template mark 단계로
+                        return reactiveRedisTemplate.opsForValue().set(CURSOR_KEY, BROADCAST_PHASE_PREFIX).then();
+                    }
+                    String lastId = batch.get(batch.size() - 1).getId();
+                    List<Long> memberIds = batch.stream().map(UserNotification::getMemberId).collect(Collectors.toList());
+                    return removeExpiredInboxEntries(memberIds)
+                            .flatMap(inboxTemplateIds -> removeDanglingReferences(batch, inboxTemplateIds, passStartedAt))
+                            .then(reactiveRedisTemplate.opsForValue().set(CURSOR_KEY, lastId))
+                            .then();
+                });
+    }
+
+    /*
+     * member_inbox의 보관 기간이 지난 entry를 지우고, 남은 entry가 참조하는 template id를 반환.
+     */
+    private Mono<Set<String>> removeExpiredInboxEntries(List<Long> memberIds) {
+        Instant now = Instant.now();
+        String collectionName = reactiveMongoTemplate.getCollectionName(MemberInbox.class);
+        return reactiveMongoTemplate.getCollection(collectionName)
+                .flatMapMany(collection -> collection.find(new Document("memberId", new Document("$in", memberIds)))
+                        .projection(new Document("entries", 1)))
+                .collectList()
+                .flatMap(inboxes -> {
+                    Set<String> referenced = new HashSet<>();
+                    int expiredCount = 0;
+                    long expiredBytes = 0;
+                    for (Document inbox : inboxes) {
+                        for (Document entry : inbox.getList("entries", Document.class, Collections.emptyList())) {
+                            if (isExpired(entry, now)) {
+                                expiredCount++;
+                                expiredBytes += bsonSize(entry);
+                            } else {
+                                referenced.add(entry.getString("templateId"));
+                            }
+                        }
+                    }
+                    if (expiredCount == 0) {
+                        return Mono.just(referenced);
+                    }
+                    int removed = expiredCount;
+                    long reclaimed = expiredBytes;
+                    return reactiveMongoTemplate.updateMulti(
+                                    Query.query(Criteria.where("memberId").in(memberIds)),
+                                    new Update().pull("entries", expiredEntryCondition(now)).inc("revision", 1),
+                                    MemberInbox.class)
+                            .doOnSuccess(result -> {
+                                expiredEntriesRemoved.increment(removed);
+                                reclaimed(collectionName, reclaimed);
+                            })
+                            .thenReturn(referenced);
+                });
+    }
+
+    /*
+     * batch가 참조하는 template 중 남아있는 것은 lastReferencedAt을 올리고(mark), 없는 것은 unread/read에서 지움.
+     */
+    private Mono<Void> removeDanglingReferences(List<UserNotification> batch, Set<String> inboxTemplateIds, Instant passStartedAt) {
+        Set<String> referenced = new HashSet<>(inboxTemplateIds);
+        batch.forEach(userNotification -> {
+            referenced.addAll(userNotification.getUnread());
+            referenced.addAll(userNotification.getRead());
+        });
+        if (referenced.isEmpty()) {
+            return Mono.empty();
+        }
+
+        Query existingQuery = Query.query(Criteria.where("_id").in(referenced));
+        existingQuery.fields().include("_id");
+        return reactiveMongoTemplate.find(existingQuery, NotificationTemplate.class)
+                .map(NotificationTemplate::getId)
+                .collect(Collectors.toSet())
+                .flatMap(existing -> {
+                    Mono<?> mark = existing.isEmpty()
+                            ? Mono.empty()
+                            : reactiveMongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(existing)),
+                                    new Update().max("lastReferencedAt", passStartedAt),
+                                    NotificationTemplate.class);
+                    return Mono.when(mark, pullDangling(batch, existing));
+                });
+    }
+
+    /*
+     * 아직 member_inbox에 합쳐지지 않은 broadcast는 user_notification에 없으므로 따로 mark.
+     * user_notification과 같이 _id 순서로 batch-size개씩 읽고, 다 보면 sweep 단계로
+     */
+    private Mono<Void> markBroadcastBatch(Instant passStartedAt, String cursor) {
+        Query query = (cursor == null ? new Query() : Query.query(Criteria.where("_id").gt(cursor)))
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .limit(properties.getBatchSize());
+        query.fields().include("templateId");
+
+        return reactiveMongoTemplate.find(query, BroadcastNotification.class)
+                .collectList()
+                .flatMap(batch -> {
+                    if (batch.isEmpty()) {
+                        return reactiveRedisTemplate.opsForValue().set(CURSOR_KEY, SWEEP_PHASE).then();
+                    }
+                    Set<String> templateIds = batch.stream()
+                            .map(BroadcastNotification::getTemplateId)
+                            .collect(Collectors.toSet());
+                    String lastId = batch.get(batch.size() - 1).getId();
+                    return reactiveMongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(templateIds)),
+                                    new Update().max("lastReferencedAt", passStartedAt),
+                                    NotificationTemplate.class)
+                            .then(reactiveRedisTemplate.opsForValue().set(CURSOR_KEY, BROADCAST_PHASE_PREFIX + lastId))
+                            .then();
+                });
+    }
+
+    private Mono<Void> pullDangling(List<UserNotification> batch, Set<String> existing) {
+        List<WriteModel<Document>> bulkWriteModels = new ArrayList<>();
+        List<Long> changedMembers = new ArrayList<>();
+        int removed = 0;
+        long reclaimed = 0;
+        for (UserNotification userNotification : batch) {
+            List<String> dangling = new ArrayList<>();
+            for (Set<String> ids : Arrays.asList(userNotification.getUnread(), userNotification.getRead())) {
+                for (String id : ids) {
+                    if (!existing.contains(id)) {
+                        dangling.add(id);
+                        reclaimed += id.length() + ARRAY_ELEMENT_OVERHEAD;
+                    }
+                }
+            }
+            if (!dangling.isEmpty()) {
+                removed += dangling.size();
+                changedMembers.add(userNotification.getMemberId());
+                bulkWriteModels.add(new UpdateOneModel<>(new Document("memberId", userNotification.getMemberId()),
+                        UnreadCountService.removePipeline(dangling)));
+            }
+        }
+        if (bulkWriteModels.isEmpty()) {
+            return Mono.empty();
+        }
+
+        int removedCount = removed;
+        long reclaimedBytes = reclaimed;
+        String collectionName = reactiveMongoTemplate.getCollectionName(UserNotification.class);
+        return reactiveMongoTemplate.getCollection(collectionName)
+                .flatMap(collection -> Mono.from(collection.bulkWrite(bulkWriteModels, new BulkWriteOptions().ordered(false))))
+                .doOnSuccess(result -> {
+                    danglingReferencesRemoved.increment(removedCount);
+                    reclaimed(collectionName, reclaimedBytes);
+                })
+                .then(unreadCountService.evict(changedMembers));
+    }
+
+    /*
+     * pass 동안 한 번도 mark 되지 않은 template을 batch-size개씩 삭제.
+     * pass 중에 새로 만들어지거나 재사용된 template은 lastReferencedAt이 touch-interval 안쪽이므로 대상이 아님
+     */
+    private Mono<Void> sweepBatch(Instant passStartedAt) {
+        Date unreferencedBefore = Date.from(passStartedAt.minus(properties.getTouchInterval()));
+        Document unreferenced = new Document("createdAt", new Document("$lt", Date.from(passStartedAt)))
+                .append("lastReferencedAt", new Document("$not", new Document("$gte", unreferencedBefore)));
+        List<Document> pipeline = Arrays.asList(
+                new Document("$match", unreferenced),
+                new Document("$limit", properties.getBatchSize()),
+                new Document("$project", new Document("size", new Document("$bsonSize", "$$ROOT"))));
+
+        String collectionName = reactiveMongoTemplate.getCollectionName(NotificationTemplate.class);
+        return reactiveMongoTemplate.getCollection(collectionName)
+                .flatMap(collection -> Flux.from(collection.aggregate(pipeline))
+                        .collectList()
+                        .flatMap(candidates -> {
+                            if (candidates.isEmpty()) {
+                                return finishPass(passStartedAt);
+                            }
+                            List<Object> ids = candidates.stream().map(document -> document.get("_id")).collect(Collectors.toList());
+                            long bytes = candidates.stream().mapToLong(document -> document.get("size", Number.class).longValue()).sum();
+                            // 조회 뒤에 재사용된 template은 남기도록 같은 조건으로 삭제
+                            Document filter = new Document(unreferenced).append("_id", new Document("$in", ids));
+                            return Mono.from(collection.deleteMany(filter))
+                                    .doOnSuccess(result -> {
+                                        templatesCollected.increment(result.getDeletedCount());
+                                        reclaimed(collectionName, bytes);
+                                        notificationTemplateStore.invalidate(ids.stream().map(String::valueOf).collect(Collectors.toSet()));
+                                    })
+                                    .then();
+                        }));
+    }
+
+    private Mono<Void> finishPass(Instant passStartedAt) {
+        Duration elapsed = Duration.between(passStartedAt, Instant.now());
+        passDuration.record(elapsed);
+        log.info("알림 retention pass 완료 - {}초", elapsed.getSeconds());
+        return reactiveRedisTemplate.delete(CURSOR_KEY, PASS_STARTED_AT_KEY).then();
+    }
+
+    private boolean isExpired(Document entry, Instant now) {
+        Date createdAt = entry.getDate("createdAt");
+        String notificationType = entry.getString("notificationType");
+        if (createdAt == null || notificationType == null) {
+            return false;
+        }
+        return !properties.expireAt(NotificationType.valueOf(notificationType), createdAt.toInstant()).isAfter(now);
+    }
+
+    // type별 보관 기간이 다르므로 type마다 createdAt 기준을 둠
+    private Document expiredEntryCondition(Instant now) {
+        List<Document> conditions = Arrays.stream(NotificationType.values())
+                .map(type -> new Document("notificationType", type.name())
+                        .append("createdAt", new Document("$lte", Date.from(now.minus(properties.ageOf(type))))))
+                .collect(Collectors.toList());
+        return new Document("$or", conditions);
+    }
+
+    private void reclaimed(String collectionName, long bytes) {
+        bytesReclaimed.get(collectionName).increment(bytes);
+    }
+
+    private static long bsonSize(Document document) {
+        return new RawBsonDocument(document, new DocumentCodec()).getByteBuffer().remaining();
+    }
+}
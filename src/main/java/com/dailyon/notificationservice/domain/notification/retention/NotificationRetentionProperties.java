@@ -0,0 +1,36 @@
+package com.dailyon.notificationservice.domain.notification.retention;
+
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "notification.retention")
+public class NotificationRetentionProperties {
+    // false면 NotificationRetentionEngine이 돌지 않음. template/overflow의 TTL(expireAt)은 항상 기록됨
+    private boolean enabled = false;
+    private Duration defaultAge = Duration.ofDays(90);
+    // NotificationType별 보관 기간. 없으면 defaultAge 사용
+    private Map<NotificationType, Duration> ages = new EnumMap<>(NotificationType.class);
+    // 한 번에 검사하는 user_notification / 삭제하는 template 수
+    private int batchSize = 500;
+    // 재사용된 template의 lastReferencedAt, expireAt은 이 간격보다 오래됐을 때만 갱신
+    private Duration touchInterval = Duration.ofHours(1);
+
+    public Duration ageOf(NotificationType notificationType) {
+        return ages.getOrDefault(notificationType, defaultAge);
+    }
+
+    public Instant expireAt(NotificationType notificationType, Instant from) {
+        return from.plus(ageOf(notificationType));
+    }
+}
@@ -0,0 +1,347 @@
+package com.dailyon.notificationservice.domain.notification.service;
+
+import com.dailyon.notificationservice.domain.notification.document.BroadcastAudienceBucket;
+import com.dailyon.notificationservice.domain.notification.document.BroadcastNotification;
+import com.dailyon.notificationservice.domain.notification.document.MemberInbox;
+import com.dailyon.notificationservice.domain.notification.document.NotificationTemplate;
+import com.dailyon.notificationservice.domain.notification.document.UserNotification;
+import com.dailyon.notificationservice.domain.notification.dto.NotificationData;
+import com.dailyon.notificationservice.domain.notification.retention.NotificationRetentionProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * 전체 member 대상 알림(broadcast).
+ * 발송: template과 BroadcastNotification을 하나씩만 저장하고, redis pub/sub으로 모든 인스턴스에 알려서 각자 연결된 member에게 SSE 발송.
+ * 조회: member_inbox.broadcastSeenAt 이후의 broadcast를 그 member의 entries와 user_notification.unread에 합친다 (fan-out on read).
+ * createdAt은 저장 전에 정해지므로(인스턴스 시계 차이 포함) 더 이른 createdAt의 broadcast가 나중에 저장될 수 있음.
+ * 그래서 broadcastSeenAt - merge-skew 이후를 다시 읽고, 그 구간에서 이미 처리한 broadcast id(recentBroadcastIds)는 거른다.
+ * 대상이 정해진 broadcast(SHARED_AUDIENCE fan-out)는 BroadcastAudienceBucket에 있는 member에게만 합친다.
+ * 이 member는 발송 대상이었으므로 lookback과 관계없이 notificationType의 보관 기간(expireAt) 안이면 합친다.
+ * member_inbox가 아직 없는 member는 먼저 옮겨서(InboxMigrationService) 만든 뒤 합친다.
+ * 최근 broadcast 시각을 인스턴스마다 들고 있어서, lookback 안에 broadcast가 없으면 조회에 추가 I/O가 없음.
+ * broadcast가 저장될 때마다 redis의 version을 올리고 인스턴스는 그 변화를 generation으로 센다. member별로 마지막으로 다 합친
+ * generation을 기억해서, 그 뒤로 저장된 broadcast가 없으면 조회에 추가 I/O가 없음 (createdAt이 이른 broadcast가 늦게 저장돼도 version은 바뀜).
+ */
+@Slf4j
+@Service
+public class BroadcastService {
+    private static final String VERSION_KEY = "notification:broadcast:version";
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final InboxService inboxService;
+    private final InboxMigrationService inboxMigrationService;
+    private final UnreadCountService unreadCountService;
+    private final RedisPubSubService redisPubSubService;
+    private final NotificationRetentionProperties retentionProperties;
+    private final Duration lookback;
+    private final int mergeLimit;
+    private final Duration mergeSkew;
+
+    // 이 인스턴스가 알고 있는 가장 최근 broadcast 시각. 없으면 null
+    private final AtomicReference<Instant> latestBroadcastAt = new AtomicReference<>();
+    // 마지막으로 본 redis version. 아직 못 읽었으면 -1
+    private final AtomicLong observedVersion = new AtomicLong(-1);
+    // 이 인스턴스가 새 broadcast를 알아챌 때마다(저장, version 변화, 최근 시각 변화) 1씩 증가
+    private final AtomicLong generation = new AtomicLong();
+    // memberId -> 마지막으로 남은 broadcast 없이 다 합쳤을 때의 generation
+    private final Cache<Long, Long> mergedGenerations;
+    private final Counter broadcastsPublished;
+    private final Counter entriesMerged;
+
+    public BroadcastService(
+            ReactiveMongoTemplate reactiveMongoTemplate,
+            ReactiveRedisTemplate<String, String> reactiveRedisTemplate,
+            InboxService inboxService,
+            InboxMigrationService inboxMigrationService,
+            UnreadCountService unreadCountService,
+            RedisPubSubService redisPubSubService,
+            NotificationRetentionProperties retentionProperties,
+            MeterRegistry meterRegistry,
+            @Value("${notification.broadcast.lookback:7d}") Duration lookback,
+            @Value("${notification.broadcast.merge-limit:50}") int mergeLimit,
+            @Value("${notification.broadcast.merge-skew:30s}") Duration mergeSkew,
+            @Value("${notification.broadcast.merged-cache-size:100000}") long mergedCacheSize) {
+        this.reactiveMongoTemplate = Objects.requireNonNull(reactiveMongoTemplate);
+        this.reactiveRedisTemplate = Objects.requireNonNull(reactiveRedisTemplate);
+        this.inboxService = Objects.requireNonNull(inboxService);
+        this.inboxMigrationService = Objects.requireNonNull(inboxMigrationService);
+        this.unreadCountService = Objects.requireNonNull(unreadCountService);
+        this.redisPubSubService = Objects.requireNonNull(redisPubSubService);
+        this.retentionProperties = Objects.requireNonNull(retentionProperties);
+        this.lookback = lookback;
+        this.mergeLimit = mergeLimit;
+        this.mergeSkew = mergeSkew;
+        this.mergedGenerations = Caffeine.newBuilder()
+                .maximumSize(mergedCacheSize)
+                .build();
+        this.broadcastsPublished = Counter.builder("notification.broadcast.published")
+                .description("저장/발행한 broadcast 수")
+                .register(meterRegistry);
+        this.entriesMerged = Counter.builder("notification.broadcast.merged")
+                .description("조회시 member_inbox에 합친 broadcast entry 수")
+                .register(meterRegistry);
+    }
+
+    /**
+     * broadcast 저장 후 모든 인스턴스에 발행. messageId가 같은 재전송은 다시 저장하지 않음.
+     */
+    public Mono<Void> publish(String messageId, NotificationTemplate template) {
+        return store(messageId, template)
+                .then(redisPubSubService.publishBroadcast(NotificationData.from(template, false)));
+    }
+
+    /**
+     * 발행 없이 저장만. 발행까지 마친 뒤 중단되어 재전송된 message를 이어서 처리할 때 사용.
+     */
+    public Mono<Void> store(String messageId, NotificationTemplate template) {
+        return save(toBroadcast(null, messageId, template, false));
+    }
+
+    /**
+     * SHARED_AUDIENCE fan-out의 대상 일부를 bucket 하나로 저장. 모든 chunk를 저장한 뒤 publishTargeted를 호출해야 조회시 합쳐짐.
+     */
+    public Mono<Void> addAudience(String broadcastId, NotificationTemplate template, List<Long> memberIds) {
+        BroadcastAudienceBucket bucket = BroadcastAudienceBucket.builder()
+                .broadcastId(broadcastId)
+                .memberIds(memberIds)
+                .expireAt(retentionProperties.expireAt(template.getNotificationType(), Instant.now()))
+                .build();
+        return reactiveMongoTemplate.insert(bucket).then();
+    }
+
+    /**
+     * 대상 bucket이 모두 저장된 broadcast 저장. 발송(SSE/stream)은 fan-out chunk마다 이미 했으므로 발행하지 않음.
+     * bucket을 다 쓰기 전에 조회한 member가 watermark를 넘겨버리지 않도록 createdAt은 이 시점으로 둠
+     */
+    public Mono<Void> publishTargeted(String broadcastId, String messageId, NotificationTemplate template) {
+        return save(toBroadcast(broadcastId, messageId, template, true));
+    }
+
+    /**
+     * 아직 합치지 않은 broadcast를 member의 알림함에 합침. 최근 알림/전체 알림/개수 조회 전에 호출.
+     * 실패해도 조회는 진행되도록 에러는 로그만 남김 (다 합치지 못했으므로 다음 조회때 다시 합침).
+     */
+    public Mono<Void> merge(Long memberId) {
+        long currentGeneration = generation.get();
+        Long mergedGeneration = mergedGenerations.getIfPresent(memberId);
+        if (mergedGeneration != null && mergedGeneration == currentGeneration) {
+            return Mono.empty();
+        }
+        Instant latest = latestBroadcastAt.get();
+        if (latest == null) {
+            return Mono.empty();
+        }
+        Instant now = Instant.now();
+        Instant lookbackStart = now.minus(lookback);
+        return inboxService.findBroadcastState(memberId)
+                .switchIfEmpty(Mono.defer(() -> inboxMigrationService.migrate(memberId)
+                        .then(inboxService.findBroadcastState(memberId))))
+                .flatMap(inbox -> {
+                    Instant seenAt = inbox.getBroadcastSeenAt();
+                    // recentBroadcastIds가 생기기 전에 합친 inbox는 다시 읽으면 중복되므로 이번 한 번은 skew 없이 읽음
+                    Duration skew = seenAt != null && inbox.getRecentBroadcastIds() == null ? Duration.ZERO : mergeSkew;
+                    // targeted broadcast는 처음 합치는 member도 보관 기간 안의 것을 모두 받으므로, seenAt 이후가 없을 때만 건너뜀
+                    if (seenAt != null && !latest.isAfter(seenAt.minus(skew))) {
+                        return Mono.just(true);
+                    }
+                    // 전체 대상 broadcast는 처음 합치는 member나 오래 접속하지 않은 member면 lookback 안의 것만 받음
+                    Instant since = seenAt != null && seenAt.isAfter(lookbackStart) ? seenAt : lookbackStart;
+                    Criteria untargeted = Criteria.where("targeted").ne(true).and("createdAt").gt(since.minus(skew));
+                    Criteria targeted = Criteria.where("targeted").is(true).and("expireAt").gt(now);
+                    if (seenAt != null) {
+                        targeted = targeted.and("createdAt").gt(seenAt.minus(skew));
+                    }
+                    List<String> recentIds = inbox.getRecentBroadcastIds() != null
+                            ? inbox.getRecentBroadcastIds()
+                            : Collections.emptyList();
+                    // 이미 처리한 broadcast가 limit을 차지해도 새 broadcast를 mergeLimit개까지 읽도록 그만큼 더 읽음.
+                    // limit에 걸리면 generation을 기록하지 않으므로 다음 조회때 이어서 합침
+                    int limit = mergeLimit + recentIds.size();
+                    Query query = Query.query(new Criteria().orOperator(untargeted, targeted))
+                            .with(Sort.by(Sort.Direction.ASC, "createdAt"))
+                            .limit(limit);
+                    return reactiveMongoTemplate.find(query, BroadcastNotification.class)
+                            .collectList()
+                            .flatMap(broadcasts -> mergeUnseen(memberId, inbox, recentIds, broadcasts, broadcasts.size() >= limit));
+                })
+                .filter(Boolean::booleanValue)
+                .doOnNext(caughtUp -> mergedGenerations.put(memberId, currentGeneration))
+                .then()
+                .onErrorResume(e -> {
+                    log.warn("broadcast 합치기 실패 memberId: {} - {}", memberId, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    // 다른 인스턴스가 저장한 broadcast version과 시각 반영
+    @Scheduled(fixedDelay = 10000)
+    public void refreshLatest() {
+        reactiveRedisTemplate.opsForValue().get(VERSION_KEY)
+                .subscribe(version -> observeVersion(Long.parseLong(version)),
+                        error -> log.error("broadcast version 조회 중 에러", error));
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "createdAt")).limit(1);
+        query.fields().include("createdAt");
+        reactiveMongoTemplate.findOne(query, BroadcastNotification.class)
+                .subscribe(broadcast -> advanceLatest(broadcast.getCreatedAt()),
+                        error -> log.error("최근 broadcast 조회 중 에러", error));
+    }
+
+    /*
+     * 읽은 broadcast 중 recentBroadcastIds에 없는 것만 합침. broadcastSeenAt은 뒤로 가지 않고,
+     * recentBroadcastIds는 새 broadcastSeenAt - merge-skew 이후에 읽은 broadcast id로 바꿈.
+     * unread는 이미 있으면 건너뛰므로 먼저 반영하고, 성공한 뒤에만 broadcastSeenAt을 옮김.
+     * 남은 broadcast 없이 다 합쳤으면 true (limit에 걸렸거나 동시에 다른 조회가 먼저 반영했으면 false)
+     */
+    private Mono<Boolean> mergeUnseen(Long memberId, MemberInbox inbox, List<String> recentIds,
+                                   List<BroadcastNotification> broadcasts, boolean truncated) {
+        Set<String> recent = new HashSet<>(recentIds);
+        List<BroadcastNotification> unseen = broadcasts.stream()
+                .filter(broadcast -> !recent.contains(broadcast.getId()))
+                .collect(Collectors.toList());
+        if (unseen.isEmpty()) {
+            return Mono.just(!truncated);
+        }
+        Instant lastCreatedAt = broadcasts.get(broadcasts.size() - 1).getCreatedAt();
+        Instant seenAt = inbox.getBroadcastSeenAt();
+        Instant newSeenAt = seenAt != null && seenAt.isAfter(lastCreatedAt) ? seenAt : lastCreatedAt;
+        Instant windowStart = newSeenAt.minus(mergeSkew);
+
+        Set<String> readIds = new HashSet<>();
+        List<String> newRecentIds = new ArrayList<>();
+        for (BroadcastNotification broadcast : broadcasts) {
+            readIds.add(broadcast.getId());
+            if (broadcast.getCreatedAt().isAfter(windowStart)) {
+                newRecentIds.add(broadcast.getId());
+            }
+        }
+        if (truncated) {
+            // limit에 걸려 읽지 못한 이전 id는 아직 구간 안일 수 있으므로 남김
+            recentIds.stream()
+                    .filter(id -> !readIds.contains(id))
+                    .forEach(newRecentIds::add);
+        }
+        return filterAudience(memberId, unseen)
+                .flatMap(received -> addUnread(memberId, received)
+                        .then(inboxService.mergeBroadcasts(memberId, inbox, newSeenAt, newRecentIds, received))
+                        .doOnNext(merged -> {
+                            if (merged) {
+                                entriesMerged.increment(received.size());
+                            }
+                        }))
+                .map(merged -> merged && !truncated);
+    }
+
+    // targeted broadcast는 member가 audience bucket에 있는 것만 남김
+    private Mono<List<BroadcastNotification>> filterAudience(Long memberId, List<BroadcastNotification> broadcasts) {
+        List<String> targetedIds = broadcasts.stream()
+                .filter(BroadcastNotification::isTargeted)
+                .map(BroadcastNotification::getId)
+                .collect(Collectors.toList());
+        if (targetedIds.isEmpty()) {
+            return Mono.just(broadcasts);
+        }
+        Query query = Query.query(Criteria.where("broadcastId").in(targetedIds).and("memberIds").is(memberId));
+        query.fields().include("broadcastId");
+        return reactiveMongoTemplate.find(query, BroadcastAudienceBucket.class)
+                .map(BroadcastAudienceBucket::getBroadcastId)
+                .collect(Collectors.toSet())
+                .map(receivedIds -> broadcasts.stream()
+                        .filter(broadcast -> !broadcast.isTargeted() || receivedIds.contains(broadcast.getId()))
+                        .collect(Collectors.toList()));
+    }
+
+    private Mono<Void> addUnread(Long memberId, List<BroadcastNotification> broadcasts) {
+        if (broadcasts.isEmpty()) {
+            return Mono.empty();
+        }
+        List<String> templateIds = broadcasts.stream()
+                .map(BroadcastNotification::getTemplateId)
+                .collect(Collectors.toList());
+        String collectionName = reactiveMongoTemplate.getCollectionName(UserNotification.class);
+        List<WriteModel<Document>> bulkWriteModels = new ArrayList<>(templateIds.size());
+        UnreadCountService.addUnreadWriteModels(bulkWriteModels, memberId, templateIds);
+        return reactiveMongoTemplate.getCollection(collectionName)
+                .flatMap(collection -> Mono.from(collection.bulkWrite(bulkWriteModels, new BulkWriteOptions().ordered(false))))
+                .then(unreadCountService.evict(memberId));
+    }
+
+    private BroadcastNotification toBroadcast(String id, String messageId, NotificationTemplate template, boolean targeted) {
+        Instant now = Instant.now();
+        return BroadcastNotification.builder()
+                .id(id)
+                .messageId(messageId)
+                .templateId(template.getId())
+                .notificationType(template.getNotificationType())
+                .message(inboxService.snippet(template.getMessage()))
+                .linkUrl(template.getLinkUrl())
+                .targeted(targeted)
+                .createdAt(now)
+                .expireAt(retentionProperties.expireAt(template.getNotificationType(), now))
+                .build();
+    }
+
+    private Mono<Void> save(BroadcastNotification broadcast) {
+        return reactiveMongoTemplate.insert(broadcast)
+                .doOnSuccess(saved -> {
+                    broadcastsPublished.increment();
+                    generation.incrementAndGet();
+                    advanceLatest(saved.getCreatedAt());
+                })
+                .flatMap(saved -> reactiveRedisTemplate.opsForValue().increment(VERSION_KEY)
+                        .doOnNext(this::observeVersion)
+                        .onErrorResume(e -> {
+                            // 다른 인스턴스는 최근 시각이 바뀐 것으로 알아챔 (createdAt이 더 이르면 다음 broadcast까지 늦어짐)
+                            log.warn("broadcast version 증가 실패 - {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .then()
+                .onErrorResume(DuplicateKeyException.class, e -> {
+                    log.info("이미 저장된 broadcast 입니다. messageId: {}", broadcast.getMessageId());
+                    return Mono.empty();
+                });
+    }
+
+    private void advanceLatest(Instant createdAt) {
+        Instant previous = latestBroadcastAt.getAndAccumulate(createdAt, (current, candidate) ->
+                current == null || candidate.isAfter(current) ? candidate : current);
+        if (previous == null || createdAt.isAfter(previous)) {
+            generation.incrementAndGet();
+        }
+    }
+
+    private void observeVersion(long version) {
+        if (observedVersion.getAndSet(version) != version) {
+            generation.incrementAndGet();
+        }
+    }
+}
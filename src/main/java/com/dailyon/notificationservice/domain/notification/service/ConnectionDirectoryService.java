@@ -0,0 +1,110 @@
+package com.dailyon.notificationservice.domain.notification.service;
+
+import com.dailyon.notificationservice.domain.notification.sse.SseConnectionLeaseListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.dailyon.notificationservice.config.NotificationConfig.CONNECTION_DIRECTORY_KEY_PREFIX;
+import static com.dailyon.notificationservice.config.NotificationConfig.UNIQUE_CONSUMER_IDENTIFIER;
+
+/**
+ * memberId -> SSE 연결을 가진 인스턴스 directory.
+ * 연결시 lease(TTL)와 함께 등록하고, heartbeat wheel이 tick마다 살아있는 연결의 lease를 갱신한다.
+ * 인스턴스가 죽으면 lease가 만료되어 자동으로 정리됨.
+ */
+@Slf4j
+@Service
+public class ConnectionDirectoryService implements SseConnectionLeaseListener {
+    private static final int LOOKUP_CHUNK_SIZE = 500;
+    private static final int RENEW_CONCURRENCY = 64;
+
+    // 다른 인스턴스가 이미 가져간 lease는 지우지 않음
+    private static final RedisScript<Long> RELEASE_SCRIPT = RedisScript.of(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final Duration leaseTtl;
+
+    public ConnectionDirectoryService(
+            ReactiveRedisTemplate<String, String> reactiveRedisTemplate,
+            @Value("${notification.routing.lease-ttl:45s}") Duration leaseTtl) {
+        this.reactiveRedisTemplate = Objects.requireNonNull(reactiveRedisTemplate);
+        this.leaseTtl = leaseTtl;
+    }
+
+    public Mono<Void> register(Long memberId) {
+        return reactiveRedisTemplate.opsForValue()
+                .set(directoryKey(memberId), UNIQUE_CONSUMER_IDENTIFIER, leaseTtl)
+                .doOnError(e -> log.error("connection directory 등록 중 에러 memberId: {}", memberId, e))
+                .then();
+    }
+
+    public Mono<Void> release(Long memberId) {
+        return reactiveRedisTemplate.execute(RELEASE_SCRIPT,
+                        Collections.singletonList(directoryKey(memberId)),
+                        Collections.singletonList(UNIQUE_CONSUMER_IDENTIFIER))
+                .doOnError(e -> log.error("connection directory 해제 중 에러 memberId: {}", memberId, e))
+                .then();
+    }
+
+    @Override
+    public void onLeaseRenewal(List<Long> memberIds) {
+        // 값은 그대로 두고 TTL만 연장. 다른 인스턴스로 재연결된 key를 연장해도 소유자는 바뀌지 않음
+        Flux.fromIterable(memberIds)
+                .flatMap(memberId -> reactiveRedisTemplate.expire(directoryKey(memberId), leaseTtl), RENEW_CONCURRENCY)
+                .subscribe(renewed -> { },
+                        error -> log.error("connection directory lease 갱신 중 에러", error));
+    }
+
+    /**
+     * memberIds를 소유 인스턴스별로 묶는다. 소유자가 없는(어디에도 연결되지 않은) member는 결과에서 빠짐.
+     */
+    public Mono<Map<String, List<Long>>> groupByOwner(List<Long> memberIds) {
+        return Flux.fromIterable(memberIds)
+                .buffer(LOOKUP_CHUNK_SIZE)
+                .concatMap(chunk -> {
+                    List<String> keys = new ArrayList<>(chunk.size());
+                    for (Long memberId : chunk) {
+                        keys.add(directoryKey(memberId));
+                    }
+                    return reactiveRedisTemplate.opsForValue().multiGet(keys)
+                            .map(owners -> new OwnerChunk(chunk, owners));
+                })
+                .<Map<String, List<Long>>>collect(HashMap::new, (grouped, ownerChunk) -> {
+                    for (int i = 0; i < ownerChunk.memberIds.size(); i++) {
+                        String owner = ownerChunk.owners.get(i);
+                        if (owner != null && !owner.isEmpty()) {
+                            grouped.computeIfAbsent(owner, key -> new ArrayList<>()).add(ownerChunk.memberIds.get(i));
+                        }
+                    }
+                });
+    }
+
+    private static String directoryKey(Long memberId) {
+        return CONNECTION_DIRECTORY_KEY_PREFIX + memberId;
+    }
+
+    private static class OwnerChunk {
+        private final List<Long> memberIds;
+        private final List<String> owners;
+
+        OwnerChunk(List<Long> memberIds, List<String> owners) {
+            this.memberIds = memberIds;
+            this.owners = owners;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.dailyon.notificationservice.domain.notification.service;
+
+import com.dailyon.notificationservice.domain.notification.document.InboxEntry;
+import com.dailyon.notificationservice.domain.notification.document.MemberInbox;
+import com.dailyon.notificationservice.domain.notification.document.MemberInboxOverflow;
+import com.dailyon.notificationservice.domain.notification.retention.NotificationRetentionProperties;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * member_inbox에서 capacity를 넘은 오래된 entry를 member_inbox_overflow로 옮긴다.
+ * overflow에 먼저 저장(id 고정이라 중복 저장돼도 하나)하고, 그 사이 entries가 바뀌지 않았을 때만(revision 비교) 배열을 자름.
+ */
+@Slf4j
+@Component
+public class InboxCompactor {
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final NotificationRetentionProperties retentionProperties;
+    private final int capacity;
+    private final int batchSize;
+    private final Counter spilledEntries;
+
+    public InboxCompactor(
+            ReactiveMongoTemplate reactiveMongoTemplate,
+            NotificationRetentionProperties retentionProperties,
+            MeterRegistry meterRegistry,
+            @Value("${notification.inbox.capacity:50}") int capacity,
+            @Value("${notification.inbox.compaction.batch-size:500}") int batchSize) {
+        this.reactiveMongoTemplate = Objects.requireNonNull(reactiveMongoTemplate);
+        this.retentionProperties = Objects.requireNonNull(retentionProperties);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.spilledEntries = Counter.builder("notification.inbox.overflow.spilled")
+                .description("member_inbox_overflow로 옮긴 entry 수")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelay = 30000)
+    public void spillOverflowingInboxes() {
+        Query query = Query.query(Criteria.where("entryCount").gt(capacity)).limit(batchSize);
+        reactiveMongoTemplate.find(query, MemberInbox.class)
+                .flatMap(this::spill, 4)
+                .reduce(0, Integer::sum)
+                .subscribe(spilled -> {
+                    if (spilled > 0) {
+                        log.info("member_inbox overflow 이동 {}건", spilled);
+                    }
+                }, error -> log.error("member_inbox overflow 이동 중 에러", error));
+    }
+
+    private Mono<Integer> spill(MemberInbox inbox) {
+        List<InboxEntry> entries = inbox.getEntries();
+        Query sameRevision = Query.query(Criteria.where("_id").is(inbox.getId()).and("revision").is(inbox.getRevision()));
+        if (entries.size() <= capacity) {
+            // 삭제로 실제 길이가 줄어든 경우. count만 바로잡음
+            return reactiveMongoTemplate.updateFirst(sameRevision, new Update().set("entryCount", entries.size()), MemberInbox.class)
+                    .thenReturn(0);
+        }
+
+        List<InboxEntry> tail = new ArrayList<>(entries.subList(capacity, entries.size()));
+        Update truncate = Update.fromDocument(new Document("$push", new Document("entries", new Document("$each", Collections.emptyList())
+                .append("$slice", capacity)))
+                .append("$set", new Document("entryCount", capacity))
+                .append("$inc", new Document("revision", 1L)));
+
+        return saveOverflow(inbox.getMemberId(), tail)
+                .then(reactiveMongoTemplate.updateFirst(sameRevision, truncate, MemberInbox.class))
+                .map(result -> {
+                    // 수정 안 됐으면 다음 주기에 다시 시도
+                    int spilled = result.getModifiedCount() > 0 ? tail.size() : 0;
+                    spilledEntries.increment(spilled);
+                    return spilled;
+                });
+    }
+
+    Mono<Void> saveOverflow(Long memberId, List<InboxEntry> entries) {
+        if (entries.isEmpty()) {
+            return Mono.empty();
+        }
+        List<WriteModel<Document>> bulkWriteModels = new ArrayList<>(entries.size());
+        for (InboxEntry entry : entries) {
+            String id = overflowId(memberId, entry);
+            Document document = new Document("_id", id)
+                    .append("memberId", memberId)
+                    .append("templateId", entry.getTemplateId())
+                    .append("notificationType", entry.getNotificationType().name())
+                    .append("message", entry.getMessage())
+                    .append("linkUrl", entry.getLinkUrl())
+                    .append("createdAt", Date.from(entry.getCreatedAt()))
+                    .append("read", entry.isRead())
+                    .append("expireAt", Date.from(retentionProperties.expireAt(entry.getNotificationType(), entry.getCreatedAt())));
+            bulkWriteModels.add(new ReplaceOneModel<>(new Document("_id", id), document, new ReplaceOptions().upsert(true)));
+        }
+        String collectionName = reactiveMongoTemplate.getCollectionName(MemberInboxOverflow.class);
+        return reactiveMongoTemplate.getCollection(collectionName)
+                .flatMap(collection -> Mono.from(collection.bulkWrite(bulkWriteModels, new BulkWriteOptions().ordered(false))))
+                .then();
+    }
+
+    private static String overflowId(Long memberId, InboxEntry entry) {
+        return memberId + ":" + entry.getTemplateId() + ":" + entry.getCreatedAt().toEpochMilli();
+    }
+}
@@ -0,0 +1,201 @@
+package com.dailyon.notificationservice.domain.notification.service;
+
+import com.dailyon.notificationservice.domain.notification.document.InboxEntry;
+import com.dailyon.notificationservice.domain.notification.document.MemberInbox;
+import com.dailyon.notificationservice.domain.notification.document.UserNotification;
+import com.dailyon.notificationservice.domain.notification.repository.MemberInboxRepository;
+import com.dailyon.notificationservice.domain.notification.repository.UserNotificationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static com.dailyon.notificationservice.config.NotificationConfig.UNIQUE_CONSUMER_IDENTIFIER;
+
+/**
+ * user_notification(unread/read id set) -> member_inbox 마이그레이션.
+ * 1. 최근 알림 조회시 아직 옮겨지지 않은 member면 그 member만 바로 옮김 (lazy)
+ * 2. notification.inbox.migration.enabled=true면 user_notification을 _id 순서로 batch 단위로 옮김 (backfill, 진행 위치는 redis에 저장)
+ * 최신 capacity개는 entries에, 나머지는 overflow에 넣고 migrated=true로 표시한다. 이미 옮겨진 member는 건너뜀.
+ */
+@Slf4j
+@Service
+public class InboxMigrationService {
+    private static final String BACKFILL_CURSOR_KEY = "notification:inbox:migration:cursor";
+    private static final String BACKFILL_LOCK_KEY = "notification:inbox:migration:lock";
+    private static final int MIGRATION_CONCURRENCY = 4;
+
+    // 만료 후 다른 인스턴스가 가져간 lock은 지우지 않음
+    private static final RedisScript<Long> RELEASE_LOCK_SCRIPT = RedisScript.of(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final MemberInboxRepository memberInboxRepository;
+    private final UserNotificationRepository userNotificationRepository;
+    private final NotificationTemplateStore notificationTemplateStore;
+    private final InboxService inboxService;
+    private final InboxCompactor inboxCompactor;
+    private final int capacity;
+    private final boolean backfillEnabled;
+    private final int backfillBatchSize;
+
+    private final AtomicBoolean backfillRunning = new AtomicBoolean();
+    private final Counter migratedMembers;
+
+    public InboxMigrationService(
+            ReactiveMongoTemplate reactiveMongoTemplate,
+            ReactiveRedisTemplate<String, String> reactiveRedisTemplate,
+            MemberInboxRepository memberInboxRepository,
+            UserNotificationRepository userNotificationRepository,
+            NotificationTemplateStore notificationTemplateStore,
+            InboxService inboxService,
+            InboxCompactor inboxCompactor,
+            MeterRegistry meterRegistry,
+            @Value("${notification.inbox.capacity:50}") int capacity,
+            @Value("${notification.inbox.migration.enabled:false}") boolean backfillEnabled,
+            @Value("${notification.inbox.migration.batch-size:200}") int backfillBatchSize) {
+        this.reactiveMongoTemplate = Objects.requireNonNull(reactiveMongoTemplate);
+        this.reactiveRedisTemplate = Objects.requireNonNull(reactiveRedisTemplate);
+        this.memberInboxRepository = Objects.requireNonNull(memberInboxRepository);
+        this.userNotificationRepository = Objects.requireNonNull(userNotificationRepository);
+        this.notificationTemplateStore = Objects.requireNonNull(notificationTemplateStore);
+        this.inboxService = Objects.requireNonNull(inboxService);
+        this.inboxCompactor = Objects.requireNonNull(inboxCompactor);
+        this.capacity = capacity;
+        this.backfillEnabled = backfillEnabled;
+        this.backfillBatchSize = backfillBatchSize;
+        this.migratedMembers = Counter.builder("notification.inbox.migrated")
+                .description("user_notification에서 member_inbox로 옮긴 member 수")
+                .register(meterRegistry);
+    }
+
+    /**
+     * member 한 명을 옮김. 이번 호출로 옮겼으면 true, 이미 옮겨져 있었으면 false.
+     */
+    public Mono<Boolean> migrate(Long memberId) {
+        return memberInboxRepository.findByMemberId(memberId)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(inbox -> {
+                    if (inbox.isPresent() && inbox.get().isMigrated()) {
+                        return Mono.just(false);
+                    }
+                    // 마이그레이션 전부터 양쪽에 쓰고 있었으므로 이미 member_inbox에 있는 알림은 제외
+                    Set<String> alreadyInInbox = inbox
+                            .map(MemberInbox::getEntries)
+                            .map(entries -> entries.stream().map(InboxEntry::getTemplateId).collect(Collectors.toSet()))
+                            .orElse(Collections.emptySet());
+                    return userNotificationRepository.findByMemberId(memberId)
+                            .flatMap(legacy -> loadLegacyEntries(legacy, alreadyInInbox))
+                            .defaultIfEmpty(Collections.emptyList())
+                            .flatMap(legacyEntries -> writeMigrated(memberId, legacyEntries));
+                });
+    }
+
+    @Scheduled(fixedDelay = 10000)
+    public void backfill() {
+        if (!backfillEnabled || !backfillRunning.compareAndSet(false, true)) {
+            return;
+        }
+        // 여러 인스턴스 중 하나만 진행
+        reactiveRedisTemplate.opsForValue().setIfAbsent(BACKFILL_LOCK_KEY, UNIQUE_CONSUMER_IDENTIFIER, Duration.ofMinutes(1))
+                .filter(Boolean::booleanValue)
+                .flatMap(locked -> backfillNextBatch()
+                        .flatMap(migrated -> reactiveRedisTemplate.execute(RELEASE_LOCK_SCRIPT,
+                                        Collections.singletonList(BACKFILL_LOCK_KEY),
+                                        Collections.singletonList(UNIQUE_CONSUMER_IDENTIFIER))
+                                .then(Mono.just(migrated))))
+                .doFinally(signal -> backfillRunning.set(false))
+                .subscribe(migrated -> {
+                    if (migrated > 0) {
+                        log.info("user_notification -> member_inbox {}명 마이그레이션", migrated);
+                    }
+                }, error -> log.error("member_inbox 마이그레이션 중 에러", error));
+    }
+
+    private Mono<Long> backfillNextBatch() {
+        return reactiveRedisTemplate.opsForValue().get(BACKFILL_CURSOR_KEY)
+                .map(cursor -> Query.query(Criteria.where("_id").gt(cursor)))
+                .defaultIfEmpty(new Query())
+                .flatMap(query -> reactiveMongoTemplate.find(
+                                query.with(Sort.by(Sort.Direction.ASC, "_id")).limit(backfillBatchSize), UserNotification.class)
+                        .collectList())
+                .flatMap(batch -> {
+                    if (batch.isEmpty()) {
+                        return Mono.just(0L);
+                    }
+                    String lastId = batch.get(batch.size() - 1).getId();
+                    return Flux.fromIterable(batch)
+                            .flatMap(legacy -> migrate(legacy.getMemberId()), MIGRATION_CONCURRENCY)
+                            .filter(Boolean::booleanValue)
+                            .count()
+                            .flatMap(migrated -> reactiveRedisTemplate.opsForValue().set(BACKFILL_CURSOR_KEY, lastId)
+                                    .thenReturn(migrated));
+                });
+    }
+
+    private Mono<List<InboxEntry>> loadLegacyEntries(UserNotification legacy, Set<String> alreadyInInbox) {
+        Set<String> templateIds = new HashSet<>(legacy.getUnread());
+        templateIds.addAll(legacy.getRead());
+        templateIds.removeAll(alreadyInInbox);
+        return notificationTemplateStore.findAllById(templateIds)
+                .map(template -> inboxService.toEntry(template, !legacy.getUnread().contains(template.getId())))
+                .sort(Comparator.comparing(InboxEntry::getCreatedAt).reversed())
+                .collectList();
+    }
+
+    private Mono<Boolean> writeMigrated(Long memberId, List<InboxEntry> legacyEntries) {
+        int embeddedCount = Math.min(capacity, legacyEntries.size());
+        List<Document> embedded = legacyEntries.subList(0, embeddedCount).stream()
+                .map(InboxMigrationService::toEntryDocument)
+                .collect(Collectors.toList());
+        List<InboxEntry> overflow = legacyEntries.subList(embeddedCount, legacyEntries.size());
+
+        Update update = Update.fromDocument(InboxService.pushEntries(embedded)
+                .append("$set", new Document("migrated", true)));
+        Query notMigrated = Query.query(Criteria.where("memberId").is(memberId).and("migrated").ne(true));
+
+        return inboxCompactor.saveOverflow(memberId, overflow)
+                .then(reactiveMongoTemplate.upsert(notMigrated, update, MemberInbox.class))
+                .doOnSuccess(result -> migratedMembers.increment())
+                .thenReturn(true)
+                // 동시에 다른 곳에서 먼저 옮긴 경우 (migrated=true document가 있어서 upsert가 insert를 시도)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false));
+    }
+
+    private static Document toEntryDocument(InboxEntry entry) {
+        return new Document("templateId", entry.getTemplateId())
+                .append("notificationType", entry.getNotificationType().name())
+                .append("message", entry.getMessage())
+                .append("linkUrl", entry.getLinkUrl())
+                .append("createdAt", Date.from(entry.getCreatedAt()))
+                .append("read", entry.isRead());
+    }
+}
@@ -0,0 +1,392 @@
+package com.dailyon.notificationservice.domain.notification.service;
+
+import com.dailyon.notificationservice.common.exceptions.ErrorResponseException;
+import com.dailyon.notificationservice.domain.notification.document.BroadcastNotification;
+import com.dailyon.notificationservice.domain.notification.document.InboxEntry;
+import com.dailyon.notificationservice.domain.notification.document.MemberInbox;
+import com.dailyon.notificationservice.domain.notification.document.MemberInboxOverflow;
+import com.dailyon.notificationservice.domain.notification.document.NotificationTemplate;
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import com.dailyon.notificationservice.domain.notification.dto.NotificationData;
+import com.dailyon.notificationservice.domain.notification.dto.NotificationPage;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * member_inbox(embedded, 최신순 capped 배열) 쓰기/조회.
+ * 알림 발송시 member별로 $push $each $sort 하나로 추가하고, 최근 알림은 document 하나에서 projection으로 읽는다.
+ * 쓰기에서는 배열을 자르지 않음. capacity를 넘은 entry는 InboxCompactor가 member_inbox_overflow에 먼저 저장한 뒤 잘라낸다.
+ * 마이그레이션 기간에는 user_notification에도 계속 쓰고, 읽음/삭제도 양쪽에 반영함.
+ */
+@Slf4j
+@Service
+public class InboxService {
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+    private static final char CURSOR_SEPARATOR = '_';
+    private static final Document ENTRY_PROJECTION = new Document("_id", 0)
+            .append("templateId", 1)
+            .append("notificationType", 1)
+            .append("message", 1)
+            .append("linkUrl", 1)
+            .append("createdAt", 1)
+            .append("read", 1);
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final int snippetLength;
+
+    public InboxService(
+            ReactiveMongoTemplate reactiveMongoTemplate,
+            @Value("${notification.inbox.snippet-length:200}") int snippetLength) {
+        this.reactiveMongoTemplate = Objects.requireNonNull(reactiveMongoTemplate);
+        this.snippetLength = snippetLength;
+    }
+
+    public Mono<Void> append(List<Long> memberIds, NotificationTemplate template) {
+        Map<Long, List<NotificationTemplate>> templatesByMember = new LinkedHashMap<>();
+        for (Long memberId : memberIds) {
+            templatesByMember.put(memberId, Collections.singletonList(template));
+        }
+        return append(templatesByMember);
+    }
+
+    /*
+     * member별 update 하나씩을 unordered bulkWrite 한 번으로 반영. inbox가 없는 member는 upsert로 생성됨.
+     */
+    public Mono<Void> append(Map<Long, List<NotificationTemplate>> templatesByMember) {
+        if (templatesByMember.isEmpty()) {
+            return Mono.empty();
+        }
+        // 같은 template이 다시 발송될 수 있으므로(interning) entry 시각은 template 생성 시각이 아닌 발송 시각
+        Date deliveredAt = new Date();
+        List<WriteModel<Document>> bulkWriteModels = new ArrayList<>(templatesByMember.size());
+        templatesByMember.forEach((memberId, templates) -> {
+            List<Document> entries = templates.stream()
+                    .map(template -> toEntryDocument(template, deliveredAt))
+                    .collect(Collectors.toList());
+            bulkWriteModels.add(new UpdateOneModel<>(new Document("memberId", memberId), pushEntries(entries), new UpdateOptions().upsert(true)));
+        });
+
+        return bulkWrite(bulkWriteModels)
+                // 처음 받는 member에 대해 동시에 upsert 하면 하나는 unique index 충돌. 이미 생겼으므로 그 operation만 다시 실행
+                .onErrorResume(MongoBulkWriteException.class, e -> {
+                    List<WriteModel<Document>> retryModels = e.getWriteErrors().stream()
+                            .filter(error -> error.getCode() == DUPLICATE_KEY_ERROR)
+                            .map(BulkWriteError::getIndex)
+                            .map(bulkWriteModels::get)
+                            .collect(Collectors.toList());
+                    if (retryModels.size() != e.getWriteErrors().size()) {
+                        return Mono.error(e);
+                    }
+                    return bulkWrite(retryModels);
+                });
+    }
+
+    /**
+     * 재전송된 message를 이어서 처리할 때 사용. 같은 template entry가 이미 있는 member는 건너뛰고, inbox가 없는 member는 만들지 않음
+     * (아직 옮겨지지 않은 member이므로 마이그레이션이 user_notification에서 가져감).
+     */
+    public Mono<Void> appendIfAbsent(List<Long> memberIds, NotificationTemplate template) {
+        if (memberIds.isEmpty()) {
+            return Mono.empty();
+        }
+        Document update = pushEntries(Collections.singletonList(toEntryDocument(template, new Date())));
+        List<WriteModel<Document>> bulkWriteModels = memberIds.stream()
+                .map(memberId -> new UpdateOneModel<Document>(new Document("memberId", memberId)
+                        .append("entries.templateId", new Document("$ne", template.getId())), update))
+                .collect(Collectors.toList());
+        return bulkWrite(bulkWriteModels);
+    }
+
+    /**
+     * 최근 안 읽은 알림. 아직 user_notification에서 옮겨지지 않은 member면 empty.
+     */
+    public Mono<List<NotificationData>> findRecentUnread(Long memberId, int limit) {
+        // 같은 template이 중복으로 들어있을 수 있어서 여유있게 가져옴
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("memberId").is(memberId).and("migrated").is(true)),
+                Aggregation.project()
+                        .and(ArrayOperators.Slice.sliceArrayOf(ArrayOperators.Filter.filter("entries")
+                                        .as("entry")
+                                        .by(ComparisonOperators.Eq.valueOf("entry.read").equalToValue(false)))
+                                .itemCount(limit * 2))
+                        .as("entries"));
+
+        return reactiveMongoTemplate.aggregate(aggregation, MemberInbox.class, MemberInbox.class)
+                .next()
+                .map(inbox -> toNotificationData(inbox.getEntries(), limit));
+    }
+
+    /**
+     * 최신순 전체 알림 한 페이지. cursor는 이전 페이지의 nextCursor (createdAt ms와 templateId), 첫 페이지는 null.
+     * embed된 entries와 overflow를 aggregation 하나에서 합쳐 정렬하고 limit 한 뒤, 남은 entry만 template과 $lookup 해서 전체 message를 붙임.
+     * overflow는 (memberId, createdAt, templateId) index 범위에서 limit 만큼만 읽으므로 전체 이력을 메모리에 올리지 않음.
+     */
+    public Mono<NotificationPage> findPage(Long memberId, String cursor, int size) {
+        Document cursorFilter = cursorFilter(cursor);
+        // 마지막 페이지인지 알기 위해 하나 더 가져옴
+        int fetchSize = size + 1;
+        Document sort = new Document("createdAt", -1).append("templateId", -1);
+
+        List<Document> overflowPipeline = Arrays.asList(
+                new Document("$match", new Document("memberId", memberId).append("$and", Collections.singletonList(cursorFilter))),
+                new Document("$sort", sort),
+                new Document("$limit", fetchSize),
+                new Document("$project", ENTRY_PROJECTION));
+        List<Document> pipeline = Arrays.asList(
+                new Document("$match", new Document("memberId", memberId)),
+                new Document("$unwind", "$entries"),
+                new Document("$replaceRoot", new Document("newRoot", "$entries")),
+                new Document("$match", cursorFilter),
+                new Document("$unionWith", new Document("coll", reactiveMongoTemplate.getCollectionName(MemberInboxOverflow.class))
+                        .append("pipeline", overflowPipeline)),
+                new Document("$sort", sort),
+                new Document("$limit", fetchSize),
+                // template _id는 ObjectId로 저장되어 있으므로 변환해서 _id index로 조회
+                new Document("$addFields", new Document("templateObjectId", new Document("$toObjectId", "$templateId"))),
+                new Document("$lookup", new Document("from", reactiveMongoTemplate.getCollectionName(NotificationTemplate.class))
+                        .append("localField", "templateObjectId")
+                        .append("foreignField", "_id")
+                        .append("as", "template")),
+                new Document("$addFields", new Document("fullMessage", new Document("$arrayElemAt", Arrays.asList("$template.message", 0)))),
+                new Document("$project", new Document("template", 0).append("templateObjectId", 0)));
+
+        String collectionName = reactiveMongoTemplate.getCollectionName(MemberInbox.class);
+        return reactiveMongoTemplate.getCollection(collectionName)
+                .flatMapMany(collection -> collection.aggregate(pipeline))
+                .collectList()
+                .map(documents -> toPage(documents, size));
+    }
+
+    public Mono<Void> markAsRead(Long memberId, String templateId) {
+        Mono<?> embedded = reactiveMongoTemplate.updateFirst(memberQuery(memberId),
+                new Update().set("entries.$[entry].read", true)
+                        .inc("revision", 1)
+                        .filterArray(Criteria.where("entry.templateId").is(templateId)),
+                MemberInbox.class);
+        Mono<?> overflow = reactiveMongoTemplate.updateMulti(
+                Query.query(Criteria.where("memberId").is(memberId).and("templateId").is(templateId)),
+                new Update().set("read", true),
+                MemberInboxOverflow.class);
+        return Mono.when(embedded, overflow);
+    }
+
+    public Mono<Void> markAllAsRead(Long memberId) {
+        Mono<?> embedded = reactiveMongoTemplate.updateFirst(memberQuery(memberId),
+                new Update().set("entries.$[].read", true).inc("revision", 1),
+                MemberInbox.class);
+        Mono<?> overflow = reactiveMongoTemplate.updateMulti(
+                Query.query(Criteria.where("memberId").is(memberId).and("read").is(false)),
+                new Update().set("read", true),
+                MemberInboxOverflow.class);
+        return Mono.when(embedded, overflow);
+    }
+
+    public Mono<Void> delete(Long memberId, String templateId) {
+        // entryCount는 그대로 두고, overflow 이동 시점에 실제 길이로 바로잡음
+        Mono<?> embedded = reactiveMongoTemplate.updateFirst(memberQuery(memberId),
+                new Update().pull("entries", new Document("templateId", templateId)).inc("revision", 1),
+                MemberInbox.class);
+        Mono<?> overflow = reactiveMongoTemplate.remove(
+                Query.query(Criteria.where("memberId").is(memberId).and("templateId").is(templateId)),
+                MemberInboxOverflow.class);
+        return Mono.when(embedded, overflow);
+    }
+
+    public Mono<Void> deleteAll(Long memberId) {
+        Mono<?> embedded = reactiveMongoTemplate.updateFirst(memberQuery(memberId),
+                new Update().set("entries", Collections.emptyList()).set("entryCount", 0).inc("revision", 1),
+                MemberInbox.class);
+        Mono<?> overflow = reactiveMongoTemplate.remove(
+                Query.query(Criteria.where("memberId").is(memberId)),
+                MemberInboxOverflow.class);
+        return Mono.when(embedded, overflow);
+    }
+
+    /**
+     * broadcast를 합친 상태(broadcastSeenAt, recentBroadcastIds)만 읽은 inbox. inbox가 없으면 empty.
+     */
+    public Mono<MemberInbox> findBroadcastState(Long memberId) {
+        Query query = memberQuery(memberId);
+        query.fields().include("broadcastSeenAt").include("recentBroadcastIds");
+        return reactiveMongoTemplate.findOne(query, MemberInbox.class);
+    }
+
+    /*
+     * broadcasts를 entries에 합치고 broadcastSeenAt, recentBroadcastIds를 바꿈. 대상이 아닌 broadcast만 있었으면 broadcasts는 비어있음.
+     * 조회 시점의 두 값이 그대로일 때만 반영되므로 동시에 조회해도 한 번만 들어감. 반영했으면 true
+     */
+    public Mono<Boolean> mergeBroadcasts(Long memberId, MemberInbox state, Instant newSeenAt, List<String> newRecentBroadcastIds,
+                                         List<BroadcastNotification> broadcasts) {
+        List<Document> entries = broadcasts.stream()
+                .map(broadcast -> new Document("templateId", broadcast.getTemplateId())
+                        .append("notificationType", broadcast.getNotificationType().name())
+                        .append("message", broadcast.getMessage())
+                        .append("linkUrl", broadcast.getLinkUrl())
+                        .append("createdAt", Date.from(broadcast.getCreatedAt()))
+                        .append("read", false))
+                .collect(Collectors.toList());
+
+        Update update = Update.fromDocument(pushEntries(entries)
+                .append("$set", new Document("broadcastSeenAt", Date.from(newSeenAt))
+                        .append("recentBroadcastIds", newRecentBroadcastIds)));
+        Query unchanged = Query.query(Criteria.where("memberId").is(memberId)
+                .and("broadcastSeenAt").is(state.getBroadcastSeenAt() == null ? null : Date.from(state.getBroadcastSeenAt()))
+                .and("recentBroadcastIds").is(state.getRecentBroadcastIds()));
+        return reactiveMongoTemplate.updateFirst(unchanged, update, MemberInbox.class)
+                .map(result -> result.getModifiedCount() > 0);
+    }
+
+    // 신규 회원은 옮길 기존 알림이 없으므로 바로 migrated 상태로 생성
+    public Mono<Void> createInbox(Long memberId) {
+        return reactiveMongoTemplate.upsert(memberQuery(memberId),
+                        new Update().setOnInsert("entries", Collections.emptyList())
+                                .setOnInsert("entryCount", 0)
+                                .setOnInsert("revision", 0L)
+                                .set("migrated", true),
+                        MemberInbox.class)
+                .then();
+    }
+
+    String snippet(String message) {
+        if (message == null || message.length() <= snippetLength) {
+            return message;
+        }
+        return message.substring(0, snippetLength);
+    }
+
+    InboxEntry toEntry(NotificationTemplate template, boolean read) {
+        return InboxEntry.builder()
+                .templateId(template.getId())
+                .notificationType(template.getNotificationType())
+                .message(snippet(template.getMessage()))
+                .linkUrl(template.getLinkUrl())
+                .createdAt(template.getCreatedAt() != null ? template.getCreatedAt() : Instant.now())
+                .read(read)
+                .build();
+    }
+
+    private Document toEntryDocument(NotificationTemplate template, Date deliveredAt) {
+        return new Document("templateId", template.getId())
+                .append("notificationType", template.getNotificationType().name())
+                .append("message", snippet(template.getMessage()))
+                .append("linkUrl", template.getLinkUrl())
+                .append("createdAt", deliveredAt)
+                .append("read", false);
+    }
+
+    // $slice로 자르면 overflow에 저장되기 전의 entry가 사라지므로 자르지 않음 (InboxCompactor가 옮긴 뒤 자름)
+    static Document pushEntries(List<Document> entries) {
+        return new Document("$push", new Document("entries", new Document("$each", entries)
+                .append("$sort", new Document("createdAt", -1))))
+                .append("$inc", new Document("entryCount", entries.size()).append("revision", 1L));
+    }
+
+    private Mono<Void> bulkWrite(List<WriteModel<Document>> bulkWriteModels) {
+        String collectionName = reactiveMongoTemplate.getCollectionName(MemberInbox.class);
+        return reactiveMongoTemplate.getCollection(collectionName)
+                .flatMap(collection -> Mono.from(collection.bulkWrite(bulkWriteModels, new BulkWriteOptions().ordered(false))))
+                .then();
+    }
+
+    // overflow 이동 중간 상태나 재발송으로 같은 template이 여러 번 있을 수 있어서 최신 것만 남김
+    private static List<NotificationData> toNotificationData(List<InboxEntry> entries, int limit) {
+        Map<String, NotificationData> distinct = new LinkedHashMap<>();
+        for (InboxEntry entry : entries) {
+            if (distinct.size() == limit) {
+                break;
+            }
+            distinct.putIfAbsent(entry.getTemplateId(), NotificationData.builder()
+                    .id(entry.getTemplateId())
+                    .message(entry.getMessage())
+                    .linkUrl(entry.getLinkUrl())
+                    .notificationType(entry.getNotificationType())
+                    .read(entry.isRead())
+                    .build());
+        }
+        return new ArrayList<>(distinct.values());
+    }
+
+    private static NotificationPage toPage(List<Document> documents, int size) {
+        List<NotificationData> notifications = new ArrayList<>(size);
+        Document last = null;
+        for (Document document : documents) {
+            if (notifications.size() == size) {
+                break;
+            }
+            // overflow 이동 중에는 같은 entry가 entries와 overflow 양쪽에 있을 수 있음. 정렬 key가 같으므로 바로 앞 것과 비교
+            if (last != null && sameEntry(last, document)) {
+                continue;
+            }
+            String message = document.getString("fullMessage");
+            notifications.add(NotificationData.builder()
+                    .id(document.getString("templateId"))
+                    .message(message != null ? message : document.getString("message"))
+                    .linkUrl(document.getString("linkUrl"))
+                    .notificationType(NotificationType.valueOf(document.getString("notificationType")))
+                    .read(document.getBoolean("read", false))
+                    .build());
+            last = document;
+        }
+        String nextCursor = documents.size() > size && last != null
+                ? last.getDate("createdAt").getTime() + CURSOR_SEPARATOR + last.getString("templateId")
+                : null;
+        return new NotificationPage(notifications, nextCursor);
+    }
+
+    private static boolean sameEntry(Document a, Document b) {
+        return Objects.equals(a.getString("templateId"), b.getString("templateId"))
+                && Objects.equals(a.getDate("createdAt"), b.getDate("createdAt"));
+    }
+
+    // (createdAt, templateId)가 cursor보다 뒤(오래된)인 entry
+    private static Document cursorFilter(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return new Document();
+        }
+        int separator = cursor.indexOf(CURSOR_SEPARATOR);
+        if (separator < 0) {
+            throw new ErrorResponseException("올바르지 않은 cursor 입니다.");
+        }
+        Date createdAt;
+        try {
+            createdAt = new Date(Long.parseLong(cursor.substring(0, separator)));
+        } catch (NumberFormatException e) {
+            throw new ErrorResponseException("올바르지 않은 cursor 입니다.");
+        }
+        String templateId = cursor.substring(separator + 1);
+        return new Document("$or", Arrays.asList(
+                new Document("createdAt", new Document("$lt", createdAt)),
+                new Document("createdAt", createdAt).append("templateId", new Document("$lt", templateId))));
+    }
+
+    private static Query memberQuery(Long memberId) {
+        return Query.query(Criteria.where("memberId").is(memberId));
+    }
+}
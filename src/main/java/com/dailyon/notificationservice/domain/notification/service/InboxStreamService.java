@@ -0,0 +1,149 @@
+package com.dailyon.notificationservice.domain.notification.service;
+
+import com.dailyon.notificationservice.config.NotificationConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.dailyon.notificationservice.config.NotificationConfig.INSTANCE_INBOX_STREAM_KEY;
+
+/**
+ * 인스턴스 inbox stream 쓰기와 보관 정책.
+ * stream에 쌓인 알림은 NOTIFICATION_STREAM_TTL(5분)이 지나면 consumer가 어차피 버리므로, XADD 시점에 MINID ~ (now - TTL)로
+ * 근사 trim 해서 spike 중에도 TTL 범위만큼만 유지한다. 쓰기가 없는 stream은 주기적인 incremental trim이 정리함.
+ * MINID는 Redis 6.2 이상에서 지원. 시작할 때 INFO server의 redis_version으로 한 번 확인해서 (cluster면 가장 낮은 node 기준)
+ * 지원하지 않거나 확인에 실패하면 MAXLEN ~ 방식을 쓴다. 확인이 끝나기 전의 쓰기는 결과를 기다렸다가 진행.
+ */
+@Slf4j
+@Service
+public class InboxStreamService {
+    private static final RedisScript<String> XADD_MINID_SCRIPT = RedisScript.of(
+            "return redis.call('XADD', KEYS[1], 'MINID', '~', ARGV[1], '*', 'payload', ARGV[2])", String.class);
+    private static final RedisScript<String> XADD_MAXLEN_SCRIPT = RedisScript.of(
+            "return redis.call('XADD', KEYS[1], 'MAXLEN', '~', ARGV[1], '*', 'payload', ARGV[2])", String.class);
+    private static final RedisScript<Long> XTRIM_MINID_SCRIPT = RedisScript.of(
+            "return redis.call('XTRIM', KEYS[1], 'MINID', '~', ARGV[1])", Long.class);
+    private static final RedisScript<Long> XTRIM_MAXLEN_SCRIPT = RedisScript.of(
+            "return redis.call('XTRIM', KEYS[1], 'MAXLEN', '~', ARGV[1])", Long.class);
+
+    private static final int[] MINID_MIN_VERSION = {6, 2};
+
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final long maxLength;
+    private final Mono<Boolean> minIdSupported;
+
+    private final AtomicLong streamLength = new AtomicLong();
+    private final AtomicLong oldestEntryAgeMillis = new AtomicLong();
+
+    public InboxStreamService(
+            ReactiveRedisTemplate<String, String> reactiveRedisTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${notification.stream.retention.max-length:10000}") long maxLength) {
+        this.reactiveRedisTemplate = Objects.requireNonNull(reactiveRedisTemplate);
+        this.maxLength = maxLength;
+        this.minIdSupported = probeMinIdSupport().cache();
+        minIdSupported.subscribe(supported -> log.info("inbox stream trim 방식: {}", supported ? "MINID ~" : "MAXLEN ~"));
+
+        Gauge.builder("notification.stream.length", streamLength, AtomicLong::get)
+                .description("인스턴스 inbox stream 길이")
+                .register(meterRegistry);
+        Gauge.builder("notification.stream.oldest.age", oldestEntryAgeMillis, age -> age.get() / 1000d)
+                .description("인스턴스 inbox stream에서 가장 오래된 entry의 나이")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    public Mono<String> append(String streamKey, String payload) {
+        List<String> keys = Collections.singletonList(streamKey);
+        return minIdSupported.flatMap(supported -> supported
+                ? reactiveRedisTemplate.execute(XADD_MINID_SCRIPT, keys, Arrays.asList(retentionCutoff(), payload)).next()
+                : reactiveRedisTemplate.execute(XADD_MAXLEN_SCRIPT, keys, Arrays.asList(String.valueOf(maxLength), payload)).next());
+    }
+
+    /*
+     * 쓰기가 뜸한 동안에도 TTL 지난 entry가 남지 않도록 자기 inbox를 가볍게 trim하고 metric 갱신
+     */
+    @Scheduled(fixedRate = 30000)
+    public void trimInstanceInbox() {
+        trim(INSTANCE_INBOX_STREAM_KEY)
+                .then(refreshMetrics(INSTANCE_INBOX_STREAM_KEY))
+                .subscribe(null, error -> log.error("Error occurred while trimming the stream: ", error));
+    }
+
+    private Mono<Long> trim(String streamKey) {
+        List<String> keys = Collections.singletonList(streamKey);
+        return minIdSupported.flatMap(supported -> supported
+                ? reactiveRedisTemplate.execute(XTRIM_MINID_SCRIPT, keys, Collections.singletonList(retentionCutoff())).next()
+                : reactiveRedisTemplate.execute(XTRIM_MAXLEN_SCRIPT, keys, Collections.singletonList(String.valueOf(maxLength))).next());
+    }
+
+    private Mono<Void> refreshMetrics(String streamKey) {
+        Mono<Long> length = reactiveRedisTemplate.opsForStream().size(streamKey)
+                .doOnNext(streamLength::set);
+        Mono<Long> oldestAge = reactiveRedisTemplate.opsForStream()
+                .range(streamKey, Range.unbounded(), RedisZSetCommands.Limit.limit().count(1))
+                .next()
+                .map(record -> System.currentTimeMillis() - record.getId().getTimestamp())
+                .defaultIfEmpty(0L)
+                .doOnNext(oldestEntryAgeMillis::set);
+        return Mono.when(length, oldestAge);
+    }
+
+    // cluster의 INFO는 node별 값이 "host:port.redis_version" 형태로 합쳐져서 오므로 접미사로 찾아 가장 낮은 version을 씀
+    private Mono<Boolean> probeMinIdSupport() {
+        return reactiveRedisTemplate.execute(connection -> connection.serverCommands().info("server"))
+                .next()
+                .map(info -> {
+                    boolean supported = false;
+                    boolean found = false;
+                    for (String key : info.stringPropertyNames()) {
+                        if (key.endsWith("redis_version")) {
+                            boolean nodeSupported = isAtLeast(info.getProperty(key), MINID_MIN_VERSION);
+                            supported = found ? supported && nodeSupported : nodeSupported;
+                            found = true;
+                        }
+                    }
+                    return supported;
+                })
+                .defaultIfEmpty(false)
+                .onErrorResume(e -> {
+                    log.warn("redis version 확인 실패. MAXLEN ~ 방식을 사용합니다: {}", e.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    private static boolean isAtLeast(String version, int[] minimum) {
+        String[] parts = version.trim().split("\\.");
+        for (int i = 0; i < minimum.length; i++) {
+            int part;
+            try {
+                part = i < parts.length ? Integer.parseInt(parts[i]) : 0;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            if (part != minimum[i]) {
+                return part > minimum[i];
+            }
+        }
+        return true;
+    }
+
+    // stream id의 앞부분은 ms 단위 timestamp라서 TTL 이전 시각을 그대로 MINID로 사용
+    private static String retentionCutoff() {
+        return String.valueOf(System.currentTimeMillis() - NotificationConfig.NOTIFICATION_STREAM_TTL);
+    }
+}
@@ -0,0 +1,227 @@
+package com.dailyon.notificationservice.domain.notification.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static com.dailyon.notificationservice.config.NotificationConfig.INGESTION_RECORD_KEY_PREFIX;
+
+/**
+ * SQS message id 기준 중복 처리 방지.
+ * message마다 hash 하나에 상태(claimed -> template -> done), 저장한 template id, lease 갱신 시각, 발송을 마친 chunk 번호를 기록한다.
+ * - lease(claimedAt + lease) 안의 기록이 있으면 다른 인스턴스가 처리 중이므로 건너뜀 (삭제하지 않아서 visibility timeout 뒤 다시 수신)
+ * - lease가 지난 기록은 처리하던 인스턴스가 죽은 것으로 보고 넘겨받아서, 저장된 template부터 이어서 처리
+ * - 이어서 처리할 때 발송을 마친 chunk는 SSE/stream 발송을 다시 하지 않음
+ * chunk 발송을 기록할 때마다 lease도 갱신되므로 대상이 많은 fan-out도 처리 중에 넘겨지지 않음.
+ * 완료된 message id는 로컬에도 최근 것만 들고 있어서 대부분의 중복은 redis 조회 없이 걸러짐.
+ */
+@Slf4j
+@Service
+public class IngestionIdempotencyService {
+    private static final String STATE = "state";
+    private static final String TEMPLATE_ID = "templateId";
+    private static final String CLAIMED_AT = "claimedAt";
+    private static final String SENT_PREFIX = "sent:";
+    private static final int LOCAL_CACHE_SIZE = 10_000;
+
+    // 반환값: done | in-flight | new | resume|<templateId>|<발송한 chunk 번호,...>
+    private static final RedisScript<String> CLAIM_SCRIPT = RedisScript.of(
+            "local state = redis.call('HGET', KEYS[1], 'state')\n" +
+            "if state == 'done' then return 'done' end\n" +
+            "if state and tonumber(ARGV[1]) - tonumber(redis.call('HGET', KEYS[1], 'claimedAt') or '0') < tonumber(ARGV[2]) then\n" +
+            "  return 'in-flight'\n" +
+            "end\n" +
+            "redis.call('HSET', KEYS[1], 'claimedAt', ARGV[1])\n" +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[3])\n" +
+            "if not state then\n" +
+            "  redis.call('HSET', KEYS[1], 'state', 'claimed')\n" +
+            "  return 'new'\n" +
+            "end\n" +
+            "local sent = {}\n" +
+            "for _, field in ipairs(redis.call('HKEYS', KEYS[1])) do\n" +
+            "  if string.sub(field, 1, 5) == 'sent:' then table.insert(sent, string.sub(field, 6)) end\n" +
+            "end\n" +
+            "return 'resume|' .. (redis.call('HGET', KEYS[1], 'templateId') or '') .. '|' .. table.concat(sent, ',')",
+            String.class);
+
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final Duration recordTtl;
+    private final Duration lease;
+    private final Map<String, Boolean> recentlyCompleted = Collections.synchronizedMap(
+            new LinkedHashMap<String, Boolean>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > LOCAL_CACHE_SIZE;
+                }
+            });
+
+    private final Counter duplicatesSkipped;
+    private final Counter inFlightSkipped;
+    private final Counter resumed;
+
+    public IngestionIdempotencyService(
+            ReactiveRedisTemplate<String, String> reactiveRedisTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${notification.ingestion.idempotency.ttl:1d}") Duration recordTtl,
+            @Value("${notification.ingestion.idempotency.lease:2m}") Duration lease) {
+        this.reactiveRedisTemplate = Objects.requireNonNull(reactiveRedisTemplate);
+        this.recordTtl = recordTtl;
+        this.lease = lease;
+        this.duplicatesSkipped = Counter.builder("notification.ingestion.duplicates.skipped")
+                .description("이미 처리가 끝나 건너뛴 중복 message 수")
+                .register(meterRegistry);
+        this.inFlightSkipped = Counter.builder("notification.ingestion.in.flight.skipped")
+                .description("다른 인스턴스가 처리 중이라 건너뛴 중복 message 수")
+                .register(meterRegistry);
+        this.resumed = Counter.builder("notification.ingestion.resumed")
+                .description("lease가 지난 기록을 넘겨받아 이어서 처리한 재전송 message 수")
+                .register(meterRegistry);
+    }
+
+    /**
+     * message 처리 시작 전에 호출. 처음이면 NEW, 끝났으면 DONE, 다른 인스턴스가 처리 중이면 IN_FLIGHT,
+     * lease가 지난 기록이면 저장된 template id와 발송을 마친 chunk 번호를 담아서 반환.
+     */
+    public Mono<Claim> claim(String messageId) {
+        if (messageId == null) {
+            return Mono.just(Claim.NEW);
+        }
+        if (recentlyCompleted.containsKey(messageId)) {
+            duplicatesSkipped.increment();
+            return Mono.just(Claim.DONE);
+        }
+        return reactiveRedisTemplate.execute(CLAIM_SCRIPT, Collections.singletonList(recordKey(messageId)),
+                        Arrays.asList(String.valueOf(System.currentTimeMillis()), String.valueOf(lease.toMillis()),
+                                String.valueOf(recordTtl.toMillis())))
+                .next()
+                .map(this::toClaim)
+                .defaultIfEmpty(Claim.NEW)
+                .onErrorResume(e -> {
+                    // redis 장애로 알림이 막히지 않도록 중복 방지 없이 처리
+                    log.warn("ingestion 기록 조회 실패 messageId: {} - {}", messageId, e.getMessage());
+                    return Mono.just(Claim.NEW);
+                });
+    }
+
+    public Mono<Void> recordTemplate(String messageId, String templateId) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put(STATE, "template");
+        fields.put(TEMPLATE_ID, templateId);
+        fields.put(CLAIMED_AT, String.valueOf(System.currentTimeMillis()));
+        return record(messageId, fields);
+    }
+
+    /**
+     * chunk 하나의 발송(SSE/stream)을 마침. lease도 같이 갱신
+     */
+    public Mono<Void> recordChunkSent(String messageId, long chunkIndex) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put(SENT_PREFIX + chunkIndex, "1");
+        fields.put(CLAIMED_AT, String.valueOf(System.currentTimeMillis()));
+        return record(messageId, fields);
+    }
+
+    public Mono<Void> complete(String messageId) {
+        if (messageId == null) {
+            return Mono.empty();
+        }
+        recentlyCompleted.put(messageId, Boolean.TRUE);
+        return record(messageId, Collections.singletonMap(STATE, "done"));
+    }
+
+    private Mono<Void> record(String messageId, Map<String, String> fields) {
+        if (messageId == null) {
+            return Mono.empty();
+        }
+        String key = recordKey(messageId);
+        return reactiveRedisTemplate.opsForHash().putAll(key, fields)
+                .then(reactiveRedisTemplate.expire(key, recordTtl))
+                .doOnError(e -> log.warn("ingestion 기록 갱신 실패 messageId: {} - {}", messageId, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private Claim toClaim(String value) {
+        switch (value) {
+            case "done":
+                duplicatesSkipped.increment();
+                return Claim.DONE;
+            case "in-flight":
+                inFlightSkipped.increment();
+                return Claim.IN_FLIGHT;
+            case "new":
+                return Claim.NEW;
+            default:
+                // resume|<templateId>|<chunk,...>
+                String[] parts = value.split("\\|", -1);
+                String templateId = parts.length > 1 && !parts[1].isEmpty() ? parts[1] : null;
+                Set<Long> sentChunks = new HashSet<>();
+                if (parts.length > 2 && !parts[2].isEmpty()) {
+                    for (String chunk : parts[2].split(",")) {
+                        sentChunks.add(Long.parseLong(chunk));
+                    }
+                }
+                if (templateId == null) {
+                    // claim만 하고 template 저장 전에 중단된 경우는 처음부터 다시 처리
+                    return Claim.NEW;
+                }
+                resumed.increment();
+                return new Claim(false, false, templateId, sentChunks);
+        }
+    }
+
+    private static String recordKey(String messageId) {
+        return INGESTION_RECORD_KEY_PREFIX + messageId;
+    }
+
+    public static final class Claim {
+        static final Claim NEW = new Claim(false, false, null, Collections.emptySet());
+        static final Claim DONE = new Claim(true, false, null, Collections.emptySet());
+        static final Claim IN_FLIGHT = new Claim(false, true, null, Collections.emptySet());
+
+        private final boolean done;
+        private final boolean inFlight;
+        private final String templateId;
+        private final Set<Long> sentChunks;
+
+        private Claim(boolean done, boolean inFlight, String templateId, Set<Long> sentChunks) {
+            this.done = done;
+            this.inFlight = inFlight;
+            this.templateId = templateId;
+            this.sentChunks = sentChunks;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+
+        // 다른 인스턴스가 처리 중. 삭제하지 않고 건너뜀
+        public boolean isInFlight() {
+            return inFlight;
+        }
+
+        // 이어서 처리할 template id. 없으면 null
+        public String getTemplateId() {
+            return templateId;
+        }
+
+        // 이전 처리에서 발송(SSE/stream)을 마친 chunk인지
+        public boolean isSent(long chunkIndex) {
+            return sentChunks.contains(chunkIndex);
+        }
+    }
+}
@@ -4,128 +4,403 @@ package com.dailyon.notificationservice.domain.notification.service;
 import com.dailyon.notificationservice.config.NotificationConfig;
 import com.dailyon.notificationservice.domain.notification.document.NotificationTemplate;
 import com.dailyon.notificationservice.domain.notification.document.UserNotification;
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
 import com.dailyon.notificationservice.domain.notification.dto.*;
-import com.dailyon.notificationservice.domain.notification.repository.NotificationTemplateRepository;
+import com.dailyon.notificationservice.domain.notification.fanout.FanOutPlanner;
+import com.dailyon.notificationservice.domain.notification.fanout.FanOutProperties;
+import com.dailyon.notificationservice.domain.notification.fanout.FanOutStrategy;
+import com.dailyon.notificationservice.domain.notification.message.NotificationMessageRenderer;
+import com.dailyon.notificationservice.domain.notification.sse.SseConnectionRegistry;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.WriteModel;
 import com.mongodb.reactivestreams.client.MongoCollection;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
-import org.springframework.data.redis.connection.stream.StreamRecords;
-import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class NotificationProcessingService {
-    private final ReactiveStringRedisTemplate stringRedisTemplate;
     private final ObjectMapper objectMapper;
     private final SseNotificationService sseNotificationService;
     private final NotificationUtils notificationUtils;
-    private final NotificationTemplateRepository notificationTemplateRepository;
     private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final ConnectionDirectoryService connectionDirectoryService;
+    private final InboxStreamService inboxStreamService;
+    private final IngestionIdempotencyService ingestionIdempotencyService;
+    private final NotificationTemplateStore notificationTemplateStore;
+    private final InboxService inboxService;
+    private final UnreadCountService unreadCountService;
+    private final FanOutProperties fanOutProperties;
+    private final BroadcastService broadcastService;
+    private final FanOutPlanner fanOutPlanner;
+    private final NotificationMessageRenderer notificationMessageRenderer;
 
-    public Mono<Void> processMessage(String message) {
-        return Mono.just(message)
-                .flatMap(this::extractNotificationData)
-                .flatMap(this::processExtendedNotification)
-                .onErrorResume(JsonProcessingException.class, e ->
-                        Mono.error(new RuntimeException("JSON message 처리 중 에러: ", e))
-                );
+    /**
+     * member별 unread 추가(unread에 없을 때만 넣고 unreadCount + 1)는 message 간에 합쳐서 unordered bulkWrite 한 번으로 반영한다.
+     * 반환값은 SQS에서 삭제해도 되는 message id: 처리를 마친 message, 이미 끝난 중복, 해석할 수 없는 message.
+     * 다른 인스턴스가 처리 중인 message와 처리에 실패한 message는 빠지므로 visibility timeout 뒤 다시 수신된다.
+     * template까지 저장된 message는 그 template으로 이어서 처리하고, 발송을 마친 chunk는 다시 발송하지 않는다.
+     */
+    public Mono<List<String>> processMessages(List<IngestedMessage> messages) {
+        List<String> skipped = Collections.synchronizedList(new ArrayList<>());
+        return Flux.fromIterable(messages)
+                .flatMapSequential(message -> ingestionIdempotencyService.claim(message.getMessageId())
+                        .filter(claim -> !claim.isInFlight())
+                        .flatMap(claim -> {
+                            if (claim.isDone()) {
+                                skipped.add(message.getMessageId());
+                                return Mono.empty();
+                            }
+                            return extractNotificationData(message.getBody())
+                                    .onErrorResume(e -> {
+                                        // 다시 받아도 해석할 수 없으므로 삭제
+                                        log.error("해석할 수 없는 message, 건너뜁니다: {}", e.getMessage(), e);
+                                        skipped.add(message.getMessageId());
+                                        return Mono.empty();
+                                    })
+                                    .flatMap(extendedData -> toPendingNotification(message.getMessageId(), claim, extendedData));
+                        })
+                        .onErrorResume(e -> {
+                            log.error("batch 내 message 처리 실패, 다시 수신해서 처리합니다: {}", e.getMessage(), e);
+                            return Mono.empty();
+                        }))
+                .collectList()
+                .flatMapMany(this::processPendingNotifications)
+                .collectList()
+                .map(completed -> {
+                    List<String> finished = new ArrayList<>(skipped);
+                    finished.addAll(completed);
+                    return finished;
+                });
+    }
+
+    private Mono<PendingNotification> toPendingNotification(String messageId, IngestionIdempotencyService.Claim claim, ExtendedNotificationData extendedData) {
+        NotificationType notificationType = extendedData.getNotificationData().getNotificationType();
+        if (notificationUtils.isBroadcast(notificationType, extendedData.getWhoToNotify())) {
+            return Mono.just(new PendingNotification(messageId, claim, null, extendedData.getNotificationData()));
+        }
+        return Mono.defer(() -> planAudience(notificationType, extendedData.getParameters(), extendedData.getWhoToNotify()))
+                .map(audience -> new PendingNotification(messageId, claim, audience, extendedData.getNotificationData()));
+    }
+
+    /*
+     * 처리를 마친 message id를 내보냄. 합쳐서 쓰는 PER_MEMBER_WRITE 묶음과 나머지 message는 각각 실패하므로
+     * 하나가 실패해도 나머지는 완료되어 삭제됨
+     */
+    private Flux<String> processPendingNotifications(List<PendingNotification> pendingNotifications) {
+        if (pendingNotifications.isEmpty()) {
+            return Flux.empty();
+        }
+        return resolveTemplates(pendingNotifications)
+                .flatMapMany(templates -> {
+                    List<Integer> mergedIndexes = new ArrayList<>();
+                    List<Integer> separateIndexes = new ArrayList<>();
+                    for (int i = 0; i < templates.size(); i++) {
+                        PendingNotification pending = pendingNotifications.get(i);
+                        // 이어서 처리하는 message는 이미 반영된 member가 있으므로 합치지 않고 따로 처리
+                        if (pending.isPerMemberWrite() && !pending.isResumed(templates.get(i))) {
+                            mergedIndexes.add(i);
+                        } else {
+                            separateIndexes.add(i);
+                        }
+                    }
+                    return Flux.concat(
+                            processMerged(pendingNotifications, templates, mergedIndexes),
+                            Flux.fromIterable(separateIndexes)
+                                    .concatMap(i -> processSeparately(pendingNotifications.get(i), templates.get(i))));
+                });
+    }
+
+    /*
+     * PER_MEMBER_WRITE는 message 간에 합쳐서 한 번에 씀. 마이그레이션 기간에는 user_notification과 member_inbox 양쪽에 반영
+     */
+    private Flux<String> processMerged(List<PendingNotification> pendingNotifications, List<NotificationTemplate> templates, List<Integer> indexes) {
+        if (indexes.isEmpty()) {
+            return Flux.empty();
+        }
+        Map<Long, List<NotificationTemplate>> templatesByMember = new LinkedHashMap<>();
+        for (Integer i : indexes) {
+            NotificationTemplate template = templates.get(i);
+            for (Long memberId : pendingNotifications.get(i).audience.memberIds) {
+                templatesByMember.computeIfAbsent(memberId, key -> new ArrayList<>(1)).add(template);
+            }
+        }
+        long startedAt = System.nanoTime();
+        return writeMerged(templatesByMember)
+                .thenMany(Flux.fromIterable(indexes)
+                        .flatMap(i -> {
+                            PendingNotification pending = pendingNotifications.get(i);
+                            NotificationTemplate template = templates.get(i);
+                            Audience audience = pending.audience;
+                            return sendChunk(pending, 0, audience.memberIds, NotificationData.from(template, false))
+                                    .then(Mono.fromRunnable(() -> fanOutPlanner.recordCost(template.getNotificationType(), audience.strategy,
+                                            audience.size, audience.size * 2, System.nanoTime() - startedAt)))
+                                    .then(ingestionIdempotencyService.complete(pending.messageId))
+                                    .then(Mono.justOrEmpty(pending.messageId));
+                        }))
+                .onErrorResume(e -> {
+                    log.error("batch 내 알림 처리 실패, 다시 수신해서 이어서 처리합니다: {}", e.getMessage(), e);
+                    return Flux.empty();
+                });
+    }
+
+    // member별로 합친 unread 추가와 member_inbox append. jmh의 IngestionBatchBenchmark에서도 사용
+    Mono<Void> writeMerged(Map<Long, List<NotificationTemplate>> templatesByMember) {
+        Map<Long, List<String>> templateIdsByMember = new LinkedHashMap<>(templatesByMember.size());
+        templatesByMember.forEach((memberId, memberTemplates) -> templateIdsByMember.put(memberId,
+                memberTemplates.stream().map(NotificationTemplate::getId).collect(Collectors.toList())));
+        return Mono.when(addUnreadToMembers(templateIdsByMember), inboxService.append(templatesByMember));
+    }
+
+    private Mono<String> processSeparately(PendingNotification pending, NotificationTemplate template) {
+        Mono<Void> delivery = pending.audience == null
+                ? publishBroadcast(pending, template)
+                : fanOut(pending, template);
+        return delivery
+                .then(ingestionIdempotencyService.complete(pending.messageId))
+                .then(Mono.justOrEmpty(pending.messageId))
+                .onErrorResume(e -> {
+                    log.error("알림 처리 실패, 다시 수신해서 이어서 처리합니다. messageId: {} - {}", pending.messageId, e.getMessage(), e);
+                    return Mono.empty();
+                });
+    }
+
+    // 이어서 처리하는 broadcast가 발행까지 마쳤으면 저장만 확인
+    private Mono<Void> publishBroadcast(PendingNotification pending, NotificationTemplate template) {
+        if (pending.claim.isSent(0)) {
+            return broadcastService.store(pending.messageId, template);
+        }
+        return broadcastService.publish(pending.messageId, template)
+                .then(ingestionIdempotencyService.recordChunkSent(pending.messageId, 0));
+    }
+
+    /*
+     * 재전송된 message는 저장해둔 template을 다시 쓰고, 나머지만 insertMany 한 번으로 저장. pendingNotifications와 같은 순서로 반환
+     */
+    private Mono<List<NotificationTemplate>> resolveTemplates(List<PendingNotification> pendingNotifications) {
+        List<String> resumedTemplateIds = pendingNotifications.stream()
+                .map(pending -> pending.claim.getTemplateId())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        Mono<Map<String, NotificationTemplate>> resumedTemplatesMono = resumedTemplateIds.isEmpty()
+                ? Mono.just(Collections.emptyMap())
+                : notificationTemplateStore.findAllById(resumedTemplateIds).collectMap(NotificationTemplate::getId);
+
+        return resumedTemplatesMono.flatMap(resumedTemplates -> {
+            NotificationTemplate[] templates = new NotificationTemplate[pendingNotifications.size()];
+            List<Integer> insertIndexes = new ArrayList<>();
+            List<NotificationData> contentsToSave = new ArrayList<>();
+            for (int i = 0; i < pendingNotifications.size(); i++) {
+                PendingNotification pending = pendingNotifications.get(i);
+                String resumedTemplateId = pending.claim.getTemplateId();
+                NotificationTemplate resumed = resumedTemplateId == null ? null : resumedTemplates.get(resumedTemplateId);
+                if (resumed != null) {
+                    templates[i] = resumed;
+                } else {
+                    insertIndexes.add(i);
+                    contentsToSave.add(pending.notificationData);
+                }
+            }
+            if (contentsToSave.isEmpty()) {
+                return Mono.just(Arrays.asList(templates));
+            }
+
+            return notificationTemplateStore.saveAll(contentsToSave)
+                    .flatMap(savedTemplates -> Flux.range(0, savedTemplates.size())
+                            .flatMap(j -> {
+                                int index = insertIndexes.get(j);
+                                templates[index] = savedTemplates.get(j);
+                                // fan-out 도중 중단되어 재전송되면 이 template부터 이어서 처리
+                                return ingestionIdempotencyService.recordTemplate(
+                                        pendingNotifications.get(index).messageId, savedTemplates.get(j).getId());
+                            })
+                            .then(Mono.fromSupplier(() -> Arrays.asList(templates))));
+        });
     }
 
     private Mono<ExtendedNotificationData> extractNotificationData(String message) {
         return Mono.fromCallable(() -> {
             SQSNotificationDto sqsNotificationDto = objectMapper.readValue(message, SQSNotificationDto.class);
             RawNotificationData rawNotificationData = sqsNotificationDto.getRawNotificationData();
-            NotificationData notificationData = NotificationData.fromRawData(rawNotificationData);
+            NotificationData notificationData = NotificationData.fromRawData(rawNotificationData, notificationMessageRenderer);
             return ExtendedNotificationData.of(sqsNotificationDto.getWhoToNotify(), notificationData, rawNotificationData.getParameters());
         }).onErrorMap(JsonProcessingException.class, e ->
                 new RuntimeException("JSON message 처리 중 에러: ", e)
         );
     }
 
-    public Mono<Void> processExtendedNotification(ExtendedNotificationData extendedData) {
-        return notificationUtils.determineMemberIds(
-                extendedData.getNotificationData().getNotificationType(),
-                extendedData.getParameters(),
-                extendedData.getWhoToNotify()
-        )
-                .flatMap(memberIds -> saveNotificationTemplate(extendedData.getNotificationData())
-                        .flatMap(savedTemplate -> {
-                            NotificationData updatedNotificationData = NotificationData.from(savedTemplate, false);
-                            return updateMultipleUserNotifications(memberIds, savedTemplate.getId())
-                                    .then(sendNotifications(memberIds, updatedNotificationData));
-                        })
-                );
+    /*
+     * 대상 수를 먼저 세서 fan-out 방식을 고름. whoToNotify가 있으면 그 크기, 재입고/경매는 대상을 읽지 않고 count만 조회.
+     * PER_MEMBER_WRITE만 대상을 목록으로 만들고, 나머지는 발송할 때 chunk 단위로 읽음
+     */
+    private Mono<Audience> planAudience(NotificationType notificationType, Map<String, String> parameters, List<Long> whoToNotify) {
+        Mono<Long> sizeMono;
+        Flux<Long> members;
+        if (notificationUtils.isStreamedAudience(notificationType, whoToNotify)) {
+            sizeMono = notificationUtils.countMemberIds(notificationType, parameters);
+            members = notificationUtils.streamMemberIds(notificationType, parameters);
+        } else {
+            sizeMono = Mono.just((long) whoToNotify.size());
+            members = Flux.fromIterable(whoToNotify);
+        }
+        return sizeMono.flatMap(size -> {
+            FanOutStrategy strategy = fanOutPlanner.plan(notificationType, size);
+            if (strategy == FanOutStrategy.PER_MEMBER_WRITE) {
+                return members.collectList().map(memberIds -> new Audience(strategy, size, memberIds, null));
+            }
+            return Mono.just(new Audience(strategy, size, Collections.emptyList(), members));
+        });
     }
 
-    private Mono<Void> sendNotifications(List<Long> memberIds, NotificationData notificationData) {
-        List<Long> connectedMemberIds = memberIds.stream()
-                .filter(sseNotificationService::isUserConnected)
-                .collect(Collectors.toList());
+    private Mono<Void> fanOut(PendingNotification pending, NotificationTemplate template) {
+        Audience audience = pending.audience;
+        boolean resumed = pending.isResumed(template);
+        long startedAt = System.nanoTime();
+        Mono<Long> writes;
+        switch (audience.strategy) {
+            case SHARED_AUDIENCE:
+                writes = fanOutSharedAudience(pending, template);
+                break;
+            case CHUNKED_WRITE:
+                writes = fanOutInChunks(pending, template, resumed);
+                break;
+            default:
+                writes = fanOutPerMember(pending, template, resumed);
+        }
+        return writes
+                .doOnNext(count -> fanOutPlanner.recordCost(template.getNotificationType(), audience.strategy,
+                        audience.size, count, System.nanoTime() - startedAt))
+                .then();
+    }
 
-        Mono<Void> connectedUsersMono = sseNotificationService.sendNotificationToConnectedUsers(connectedMemberIds, notificationData);
-        List<Long> unconnectedMemberIds = memberIds.stream()
-                .filter(id -> !sseNotificationService.isUserConnected(id))
-                .collect(Collectors.toList());
+    private Mono<Long> fanOutPerMember(PendingNotification pending, NotificationTemplate template, boolean resumed) {
+        List<Long> memberIds = pending.audience.memberIds;
+        if (memberIds.isEmpty()) {
+            return Mono.just(0L);
+        }
+        NotificationData updatedNotificationData = NotificationData.from(template, false);
+        return Mono.when(updateMultipleUserNotifications(memberIds, template.getId()),
+                        appendToInbox(memberIds, template, resumed))
+                .then(sendChunk(pending, 0, memberIds, updatedNotificationData))
+                .thenReturn(memberIds.size() * 2L);
+    }
+
+    /*
+     * 대상을 chunk-size명씩 끊어서 chunk마다 bulkWrite, SSE/stream 발송까지 처리. chunk-concurrency개씩만 동시에 진행하므로
+     * 대상 수와 관계없이 메모리에는 그만큼만 올라가고, 앞쪽 chunk의 member는 뒤쪽 대상을 읽기 전에 알림을 받음
+     */
+    private Mono<Long> fanOutInChunks(PendingNotification pending, NotificationTemplate template, boolean resumed) {
+        NotificationData notificationData = NotificationData.from(template, false);
+        return pending.audience.members
+                .buffer(Math.max(1, fanOutProperties.getChunkSize()))
+                .index()
+                .flatMap(chunk -> Mono.when(updateMultipleUserNotifications(chunk.getT2(), template.getId()),
+                                        appendToInbox(chunk.getT2(), template, resumed))
+                                .then(sendChunk(pending, chunk.getT1(), chunk.getT2(), notificationData))
+                                .thenReturn(chunk.getT2().size() * 2L),
+                        Math.max(1, fanOutProperties.getChunkConcurrency()))
+                .reduce(0L, Long::sum);
+    }
 
-        Mono<Void> publishToStreamMono = publishUnconnectedUserNotifications(unconnectedMemberIds, notificationData);
+    /*
+     * member별 document는 쓰지 않고 chunk마다 audience bucket 하나만 저장, 발송은 chunk마다 바로 함.
+     * 알림함/안읽은 수에는 member가 조회할 때 BroadcastService.merge로 합쳐짐.
+     * 이어서 처리할 때는 bucket을 새 broadcastId로 다시 씀. 이전 처리가 발행까지 마쳤으면 messageId 중복으로 새 broadcast는 저장되지 않음
+     */
+    private Mono<Long> fanOutSharedAudience(PendingNotification pending, NotificationTemplate template) {
+        String broadcastId = new ObjectId().toHexString();
+        NotificationData notificationData = NotificationData.from(template, false);
+        return pending.audience.members
+                .buffer(Math.max(1, fanOutProperties.getChunkSize()))
+                .index()
+                .flatMap(chunk -> broadcastService.addAudience(broadcastId, template, chunk.getT2())
+                                .then(sendChunk(pending, chunk.getT1(), chunk.getT2(), notificationData))
+                                .thenReturn(1L),
+                        Math.max(1, fanOutProperties.getChunkConcurrency()))
+                .reduce(0L, Long::sum)
+                .flatMap(buckets -> broadcastService.publishTargeted(broadcastId, pending.messageId, template)
+                        .thenReturn(buckets + 1));
+    }
+
+    // 이어서 처리할 때는 이미 entry가 들어간 member를 건너뜀
+    private Mono<Void> appendToInbox(List<Long> memberIds, NotificationTemplate template, boolean resumed) {
+        return resumed ? inboxService.appendIfAbsent(memberIds, template) : inboxService.append(memberIds, template);
+    }
+
+    /*
+     * 이어서 처리하는 message면 이전 처리에서 발송을 마친 chunk는 건너뜀. 발송을 마치면 chunk 번호를 기록(lease도 갱신).
+     * chunk 번호는 대상을 같은 순서로 읽는다는 가정이라, 재전송 사이에 대상이 바뀌면 경계 근처 member는 발송이 빠지거나
+     * 두 번 갈 수 있음 (알림함에는 모두 반영됨)
+     */
+    private Mono<Void> sendChunk(PendingNotification pending, long chunkIndex, List<Long> memberIds, NotificationData notificationData) {
+        if (pending.claim.isSent(chunkIndex)) {
+            return Mono.empty();
+        }
+        return sendNotifications(memberIds, notificationData)
+                .then(ingestionIdempotencyService.recordChunkSent(pending.messageId, chunkIndex));
+    }
+
+    private Mono<Void> sendNotifications(List<Long> memberIds, NotificationData notificationData) {
+        SseConnectionRegistry.Partition partition = sseNotificationService.partitionByConnection(memberIds);
+
+        Mono<Void> connectedUsersMono = sseNotificationService.sendNotificationToConnectedUsers(partition.getConnected(), notificationData);
+        Mono<Void> publishToStreamMono = publishUnconnectedUserNotifications(partition.getUnconnected(), notificationData);
 
         // connectedUsersMono, publishToStreamMono가 다 끝나야 Mono 반환
         return Mono.when(connectedUsersMono, publishToStreamMono);
     }
 
+    /*
+     * 미연결 member를 connection directory로 소유 인스턴스별로 묶어서, 해당 인스턴스의 inbox stream에만 발행한다.
+     * 어느 인스턴스에도 연결되지 않은 member는 stream에 쓰지 않고 버림 (다음 접속시 알림함에서 조회됨)
+     */
     public Mono<Void> publishUnconnectedUserNotifications(List<Long> unconnectedMemberIds, NotificationData notificationData) {
         if (unconnectedMemberIds.isEmpty()) {
             return Mono.empty(); // 비어있으니 무시
         }
 //        log.info("publishUnconnectedUserNotifications 입장 - 미연결 memberIds: {} \n 데이터: {}", unconnectedMemberIds, notificationData);
+        return connectionDirectoryService.groupByOwner(unconnectedMemberIds)
+                .flatMapMany(membersByOwner -> Flux.fromIterable(membersByOwner.entrySet()))
+                // 자기 인스턴스 소유인데 로컬에 연결이 없으면 이미 끊긴 연결의 lease가 남아있는 것
+                .filter(ownerEntry -> !NotificationConfig.UNIQUE_CONSUMER_IDENTIFIER.equals(ownerEntry.getKey()))
+                .flatMap(ownerEntry -> publishToInstanceInbox(ownerEntry.getKey(), ownerEntry.getValue(), notificationData))
+                .then();
+    }
+
+    private Mono<Void> publishToInstanceInbox(String instanceId, List<Long> memberIds, NotificationData notificationData) {
         return Mono.fromCallable(() -> {
-                    NotificationDataWithWhoToNotify redisNotificationDto = NotificationDataWithWhoToNotify.create(unconnectedMemberIds, notificationData);
+                    NotificationDataWithWhoToNotify redisNotificationDto = NotificationDataWithWhoToNotify.create(memberIds, notificationData);
                     return objectMapper.writeValueAsString(redisNotificationDto);
                 })
-                .flatMap(jsonNotification -> stringRedisTemplate.opsForStream()
-                        .add(StreamRecords.newRecord()
-                                .in(NotificationConfig.NOTIFICATIONS_STREAM_KEY)
-                                .ofObject(jsonNotification))
-                )
+                .flatMap(jsonNotification -> inboxStreamService
+                        .append(NotificationConfig.instanceInboxStreamKey(instanceId), jsonNotification))
                 .then();
     }
 
-    private Mono<NotificationTemplate> saveNotificationTemplate(NotificationData notificationData) {
-        return notificationTemplateRepository.save(NotificationTemplate.builder()
-                .message(notificationData.getMessage())
-                .linkUrl(notificationData.getLinkUrl())
-                .notificationType(notificationData.getNotificationType())
-                .build());
-    }
-
     private Mono<Void> updateMultipleUserNotifications(List<Long> memberIds, String notificationTemplateId) {
 //        log.info("Starting bulk update for UserNotification with templateId: {}", notificationTemplateId);
-        // 'unread' 필드에 notificationTemplateId를 추가하는 BSON 업데이트 정의
-        Document updateDocument = new Document("$addToSet", new Document("unread", notificationTemplateId));
-
         // 'user_notification' 컬렉션이름 조회
         String collectionName = reactiveMongoTemplate.getCollectionName(UserNotification.class);
 
-        // bulk operation 위해 memberIds 개수 만큼의 List<WriteModel<Document>> 생성
-        List<WriteModel<Document>> bulkWriteModels = memberIds.stream().map(memberId -> {
-            // 1. 순회하며 memberIds의 memberId 원소 필터 생성
-            Document filter = new Document("memberId", memberId);
-
-            // 2. UpdateOneModel<Document> 이용, WriteModel<Document>객체 리스트 생성 -> 필터에 걸린 document들 대상 bulkwrite 진행.
-            return new UpdateOneModel<Document>(filter, updateDocument);
-        }).collect(Collectors.toList());
+        List<WriteModel<Document>> bulkWriteModels = addUnreadWriteModels(memberIds, notificationTemplateId);
 
         // 컬렉션을 비동기적으로 가져오기 위한 Mono<MongoCollection<Document>>
         Mono<MongoCollection<Document>> userNotificationCollectionMono = reactiveMongoTemplate.getCollection(collectionName);
@@ -133,9 +408,74 @@ public class NotificationProcessingService {
         // collection.bulkWrite() 이용, MongoCollection에 대한 비동기 벌크 업데이트 진행.
         // This expects a list of WriteModel<Document>, which we provide.
         return userNotificationCollectionMono.flatMap(collection ->
-                Mono.from(collection.bulkWrite(bulkWriteModels))
-        ).then();
-        // 개별 연산들을 서버에서 파이프라인을 통해 순차적으로 혹은 가능한 범위 내에서 병렬로 안전하게 실행
-        // application 단위에서 직접 set에 넣고 save하는게 아니라 $addToSet notificationTemplateId 연산으로 정의하기 때문에 race condition을 막음.
+                Mono.from(collection.bulkWrite(bulkWriteModels, new BulkWriteOptions().ordered(false)))
+        ).then(unreadCountService.evict(memberIds));
+        // 개별 연산들은 서로 독립이라 순서 없이(unordered) 실행하고, 하나가 실패해도 나머지 member는 반영됨
+        // application 단위에서 직접 set에 넣고 save하는게 아니라 unread에 없을 때만 넣고 unreadCount를 올리는 update로 정의하기 때문에 race condition을 막음.
+    }
+
+    // bulk operation 위해 memberIds 개수 만큼의 List<WriteModel<Document>> 생성. jmh의 UnreadWriteModelBenchmark에서도 사용
+    static List<WriteModel<Document>> addUnreadWriteModels(List<Long> memberIds, String notificationTemplateId) {
+        // interning된 template은 이전에 읽은 알림과 id가 같을 수 있으므로 read에서는 빼서 다시 안 읽은 상태로 만듦
+        List<String> templateIds = Collections.singletonList(notificationTemplateId);
+        List<WriteModel<Document>> bulkWriteModels = new ArrayList<>(memberIds.size());
+        for (Long memberId : memberIds) {
+            UnreadCountService.addUnreadWriteModels(bulkWriteModels, memberId, templateIds);
+        }
+        return bulkWriteModels;
+    }
+
+    /*
+     * batch 안의 여러 template id를 member별로 합친 업데이트. operation끼리 독립이므로 unordered bulkWrite 한 번으로 실행
+     */
+    private Mono<Void> addUnreadToMembers(Map<Long, List<String>> templateIdsByMember) {
+        if (templateIdsByMember.isEmpty()) {
+            return Mono.empty();
+        }
+        List<WriteModel<Document>> bulkWriteModels = new ArrayList<>(templateIdsByMember.size());
+        templateIdsByMember.forEach((memberId, templateIds) ->
+                UnreadCountService.addUnreadWriteModels(bulkWriteModels, memberId, templateIds));
+
+        String collectionName = reactiveMongoTemplate.getCollectionName(UserNotification.class);
+        return reactiveMongoTemplate.getCollection(collectionName)
+                .flatMap(collection -> Mono.from(collection.bulkWrite(bulkWriteModels, new BulkWriteOptions().ordered(false))))
+                .then(unreadCountService.evict(templateIdsByMember.keySet()));
+    }
+
+    private static class PendingNotification {
+        private final String messageId;
+        private final IngestionIdempotencyService.Claim claim; // 재전송된 message면 저장된 template과 발송을 마친 chunk
+        private final Audience audience; // 전체 member 대상(broadcast)이면 null
+        private final NotificationData notificationData;
+
+        PendingNotification(String messageId, IngestionIdempotencyService.Claim claim, Audience audience, NotificationData notificationData) {
+            this.messageId = messageId;
+            this.claim = claim;
+            this.audience = audience;
+            this.notificationData = notificationData;
+        }
+
+        boolean isPerMemberWrite() {
+            return audience != null && audience.strategy == FanOutStrategy.PER_MEMBER_WRITE;
+        }
+
+        // 이전 처리가 저장한 template으로 이어서 처리하는지
+        boolean isResumed(NotificationTemplate template) {
+            return template.getId().equals(claim.getTemplateId());
+        }
+    }
+
+    private static class Audience {
+        private final FanOutStrategy strategy;
+        private final long size; // 방식을 고를 때 센 대상 수
+        private final List<Long> memberIds; // PER_MEMBER_WRITE 대상. 나머지는 empty
+        private final Flux<Long> members; // chunk 단위로 읽을 대상. PER_MEMBER_WRITE면 null
+
+        Audience(FanOutStrategy strategy, long size, List<Long> memberIds, Flux<Long> members) {
+            this.strategy = strategy;
+            this.size = size;
+            this.memberIds = memberIds;
+            this.members = members;
+        }
     }
 }
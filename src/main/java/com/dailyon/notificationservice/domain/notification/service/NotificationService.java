@@ -2,20 +2,22 @@ package com.dailyon.notificationservice.domain.notification.service;
 
 import com.dailyon.notificationservice.domain.notification.api.request.EnrollRestockRequest;
 import com.dailyon.notificationservice.domain.notification.document.NotificationTemplate;
-import com.dailyon.notificationservice.domain.notification.document.RestockNotification;
 import com.dailyon.notificationservice.domain.notification.document.UserNotification;
 import com.dailyon.notificationservice.domain.notification.dto.NotificationData;
-import com.dailyon.notificationservice.domain.notification.repository.NotificationTemplateRepository;
-import com.dailyon.notificationservice.domain.notification.repository.RestockNotificationRepository;
+import com.dailyon.notificationservice.domain.notification.dto.NotificationPage;
 import com.dailyon.notificationservice.domain.notification.repository.UserNotificationRepository;
 import com.mongodb.DuplicateKeyException;
 import lombok.RequiredArgsConstructor;
 
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -29,109 +31,116 @@ import java.util.stream.Stream;
 @Transactional(readOnly = true)
 @RequiredArgsConstructor
 public class NotificationService {
-    private final NotificationTemplateRepository notificationTemplateRepository;
+    private final NotificationTemplateStore notificationTemplateStore;
     private final UserNotificationRepository userNotificationRepository;
-    private final RestockNotificationRepository restockNotificationRepository;
+    private final RestockSubscriberService restockSubscriberService;
     private final ReactiveMongoOperations mongoOperations;
+    private final InboxService inboxService;
+    private final InboxMigrationService inboxMigrationService;
+    private final UnreadCountService unreadCountService;
+    private final BroadcastService broadcastService;
 
-    // 최근 5개 unread 알림 받기
+    private static final int RECENT_NOTIFICATION_COUNT = 5;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // 최근 5개 unread 알림 받기. member_inbox document 하나만 읽음
     public Flux<NotificationData> getRecentNotifications(Long memberId) {
+        return broadcastService.merge(memberId)
+                .then(inboxService.findRecentUnread(memberId, RECENT_NOTIFICATION_COUNT))
+                .switchIfEmpty(Mono.defer(() -> {
+                    // 아직 member_inbox로 옮겨지지 않은 member. 이번엔 기존 방식으로 응답하고 바로 옮김
+                    inboxMigrationService.migrate(memberId)
+                            .subscribe(null, error -> log.error("member_inbox 마이그레이션 실패 memberId: {}", memberId, error));
+                    return getRecentLegacyNotifications(memberId).collectList();
+                }))
+                .flatMapMany(Flux::fromIterable);
+    }
+
+    private Flux<NotificationData> getRecentLegacyNotifications(Long memberId) {
         return userNotificationRepository.findByMemberId(memberId)
-                .flatMapMany(userNotification -> notificationTemplateRepository.findByIdIn(userNotification.getUnread()))
+                .flatMapMany(userNotification -> notificationTemplateStore.findAllById(userNotification.getUnread()))
                 .sort(Comparator.comparing(NotificationTemplate::getCreatedAt).reversed())
-                .take(5)
+                .take(RECENT_NOTIFICATION_COUNT)
                 .map(template -> NotificationData.from(template, false));
     }
 
-    // 모든 알림 조회 (unread 및 read)
-    public Flux<NotificationData> getAllNotifications(Long memberId) {
-        return userNotificationRepository.findByMemberId(memberId)
-                .flatMapMany(userNotification -> {
-                    Flux<NotificationData> unreadNotifications = notificationTemplateRepository.findByIdIn(userNotification.getUnread())
-                            .map(template -> NotificationData.from(template, false));
-                    Flux<NotificationData> readNotifications = notificationTemplateRepository.findByIdIn(userNotification.getRead())
-                            .map(template -> NotificationData.from(template, true));
-
-                    return Flux.concat(unreadNotifications, readNotifications); // Fluxes 단일로 합쳐서 return
-                });
+    // 모든 알림 조회 (unread 및 read). 최신순, cursor 기준 size개씩
+    public Mono<NotificationPage> getAllNotifications(Long memberId, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        if (cursor != null) {
+            return inboxService.findPage(memberId, cursor, pageSize);
+        }
+        // 첫 페이지 조회 전에 아직 member_inbox로 옮겨지지 않은 member면 옮기고, 새 broadcast를 합침
+        return inboxMigrationService.migrate(memberId)
+                .then(broadcastService.merge(memberId))
+                .then(inboxService.findPage(memberId, null, pageSize));
     }
 
     // 안읽은 알림 개수 받기
     public Mono<Integer> countUnreadNotifications(Long memberId) {
-        // 여기서는 UserNotification에서 unread 상태인 알림의 수를 계산합니다.
-        return userNotificationRepository.findByMemberId(memberId)
-                .map(UserNotification::getUnread)
-                .map(Set::size)
-                .switchIfEmpty(Mono.just(0)); // 문서가 없거나 unread 집합이 없는 경우 0 반환
+        // 전체 id set 대신 쓰기마다 갱신되는 unreadCount만 읽음. 문서가 없으면 0
+        return broadcastService.merge(memberId)
+                .then(unreadCountService.count(memberId));
     }
 
 
+    /*
+     * 읽음/삭제는 document를 읽어서 통째로 save 하지 않고 updateOne 하나로 처리.
+     * 발송 쪽 update(unread에 없을 때만 넣고 unreadCount + 1)와 같은 document에 동시에 들어와도
+     * document 단위로 하나씩 적용되고, 읽음/삭제는 unreadCount를 unread 크기로 다시 계산하므로 새 알림이 덮어써지거나 개수가 어긋나지 않음
+     */
+
     // 모든 알림 읽음 처리
     @Transactional
     public Mono<Void> markAllNotificationsAsRead(Long memberId) {
-        return userNotificationRepository.findByMemberId(memberId)
-                .flatMap(userNotification -> {
-                    userNotification.markAsReadAllNotifications();
-                    return userNotificationRepository.save(userNotification);
-                }).then();
+        return updateUserNotification(memberId, UnreadCountService.markAllAsReadPipeline())
+                .then(Mono.when(inboxService.markAllAsRead(memberId), unreadCountService.evict(memberId)));
     }
 
     // 개별 알림 읽음처리
     @Transactional
     public Mono<Void> markNotificationAsRead(String notificationId, Long memberId) {
-        return userNotificationRepository.findByMemberId(memberId)
-                .flatMap(userNotification -> {
-                    userNotification.markAsRead(notificationId);
-                    return userNotificationRepository.save(userNotification);
-                }).then();
+        // unread에 있을 때만 옮기고, unreadCount는 unread 크기로 다시 계산 (unreadCount가 없는 이전 document에 -1이 들어가지 않도록)
+        Document unread = new Document("memberId", memberId).append("unread", notificationId);
+        return updateUserNotification(unread, UnreadCountService.markAsReadPipeline(notificationId))
+                .then(Mono.when(inboxService.markAsRead(memberId, notificationId), unreadCountService.evict(memberId)));
     }
 
     // 모든 알림 삭제
     @Transactional
     public Mono<Void> deleteAllNotifications(Long memberId) {
-        return userNotificationRepository.findByMemberId(memberId)
-                .flatMap(userNotification -> {
-                    userNotification.deleteAllNotifications();
-                    return userNotificationRepository.save(userNotification);
-                }).then();
+        Update update = new Update()
+                .set("unread", Collections.emptyList())
+                .set("read", Collections.emptyList())
+                .set("unreadCount", 0);
+        return mongoOperations.updateFirst(Query.query(Criteria.where("memberId").is(memberId)), update, UserNotification.class)
+                .then(Mono.when(inboxService.deleteAll(memberId), unreadCountService.evict(memberId)));
     }
 
     // 개별 알림 삭제
     @Transactional
     public Mono<Void> deleteNotification(String notificationId, Long memberId) {
-        return userNotificationRepository
-                .findByMemberId(memberId)
-                .flatMap(userNotification -> {
-                    userNotification.deleteNotification(notificationId);
-                    return userNotificationRepository.save(userNotification);
-                }).then();
+        return updateUserNotification(memberId, UnreadCountService.removePipeline(notificationId))
+                .then(Mono.when(inboxService.delete(memberId, notificationId), unreadCountService.evict(memberId)));
     }
 
-    @Transactional
-    public Mono<String> createOrUpdateRestockNotification(Long memberId, EnrollRestockRequest request) {
-        return restockNotificationRepository.findByProductIdAndSizeId(request.getProductId(), request.getSizeId())
-                .switchIfEmpty(createNewRestockNotification(request.getProductId(), request.getSizeId(), memberId))
-                .flatMap(restockNotification -> updateRestockNotification(restockNotification, memberId))
-                .map(RestockNotification::getId);
+    private Mono<Void> updateUserNotification(Long memberId, List<Document> updatePipeline) {
+        return updateUserNotification(new Document("memberId", memberId), updatePipeline);
     }
 
-    private Mono<RestockNotification> createNewRestockNotification(Long productId, Long sizeId, Long memberId) {
-        RestockNotification newNotification = RestockNotification.builder()
-                .productId(productId)
-                .sizeId(sizeId)
-                .memberIds(new HashSet<>(Collections.singletonList(memberId)))
-                .build();
-        return restockNotificationRepository.save(newNotification);
+    private Mono<Void> updateUserNotification(Document filter, List<Document> updatePipeline) {
+        String collectionName = mongoOperations.getCollectionName(UserNotification.class);
+        return mongoOperations.getCollection(collectionName)
+                .flatMap(collection -> Mono.from(collection.updateOne(filter, updatePipeline)))
+                .then();
     }
 
-    private Mono<RestockNotification> updateRestockNotification(RestockNotification restockNotification, Long memberId) {
-        boolean isNewMember = restockNotification.getMemberIds().add(memberId); // 새로 들어갔는지 여부에 따라 boolean 반환
-        if (isNewMember) {
-            // reactive Mongo는 session or persistence context를 두고 관리하지않음. JPA와 다르게 dirty checking 없이 명시적 save 필요
-            return restockNotificationRepository.save(restockNotification); //
-        } else {
-            return Mono.just(restockNotification);
-        }
+    public Mono<String> createOrUpdateRestockNotification(Long memberId, EnrollRestockRequest request) {
+        return restockSubscriberService.subscribe(request.getProductId(), request.getSizeId(), memberId);
+    }
+
+    public Mono<Void> cancelRestockNotification(Long memberId, Long productId, Long sizeId) {
+        return restockSubscriberService.unsubscribe(productId, sizeId, memberId);
     }
 
     @Transactional
@@ -141,6 +150,7 @@ public class NotificationService {
                 .unread(new HashSet<>())
                 .read(new HashSet<>())
                 .deleted(new HashSet<>())
+                .unreadCount(0)
                 .build();
         return userNotificationRepository.insert(newUserNotification)
                 .then()
@@ -148,6 +158,7 @@ public class NotificationService {
                     // 중복 키 예외 처리
                     log.error("UserNotification의 memberId {} 중복.", memberId, e);
                     return Mono.empty(); // 혹은 적절한 대응 메커니즘
-                });
+                })
+                .then(inboxService.createInbox(memberId));
     }
 }
@@ -0,0 +1,365 @@
+package com.dailyon.notificationservice.domain.notification.service;
+
+import com.dailyon.notificationservice.domain.notification.document.NotificationTemplate;
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import com.dailyon.notificationservice.domain.notification.dto.NotificationData;
+import com.dailyon.notificationservice.domain.notification.repository.NotificationTemplateRepository;
+import com.dailyon.notificationservice.domain.notification.retention.NotificationRetentionProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * NotificationTemplate 저장소.
+ * template은 저장 후 바뀌지 않으므로 id로 조회한 template은 로컬 cache(크기 기준 weight 제한)에 두고, 없는 것만 한 번에 조회한다.
+ * 저장한 template은 바로 cache에 넣어서 알림을 받은 member가 알림함을 열 때 mongo 조회가 없도록 함.
+ * interning 모드에서는 (notificationType, message, linkUrl) hash가 같은 template을 새로 만들지 않고 기존 id를 재사용한다.
+ * 최근 사용한 hash는 로컬에 들고 있어서 AUCTION_END처럼 내용이 고정된 알림은 mongo 조회 없이 처리됨.
+ * 재사용한 template은 touch-interval마다 lastReferencedAt과 expireAt(TTL)을 연장해서 계속 발송되는 template이 만료되지 않게 함.
+ */
+@Slf4j
+@Service
+public class NotificationTemplateStore {
+    private static final char FIELD_SEPARATOR = '\u0000';
+    // template 하나의 고정 크기 추정치 (객체 header, 필드, id/hash 문자열, cache entry)
+    private static final int TEMPLATE_BASE_WEIGHT = 256;
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final NotificationTemplateRepository notificationTemplateRepository;
+    private final NotificationRetentionProperties retentionProperties;
+    private final boolean interningEnabled;
+    private final Map<String, NotificationTemplate> recentTemplates;
+    private final Cache<String, NotificationTemplate> templatesById;
+
+    private final Counter internRequested;
+    private final Counter internReused;
+
+    public NotificationTemplateStore(
+            ReactiveMongoTemplate reactiveMongoTemplate,
+            NotificationTemplateRepository notificationTemplateRepository,
+            NotificationRetentionProperties retentionProperties,
+            MeterRegistry meterRegistry,
+            @Value("${notification.template.interning.enabled:true}") boolean interningEnabled,
+            @Value("${notification.template.interning.local-cache-size:1000}") int localCacheSize,
+            @Value("${notification.template.cache.max-weight:32MB}") DataSize cacheMaxWeight) {
+        this.reactiveMongoTemplate = Objects.requireNonNull(reactiveMongoTemplate);
+        this.notificationTemplateRepository = Objects.requireNonNull(notificationTemplateRepository);
+        this.retentionProperties = Objects.requireNonNull(retentionProperties);
+        this.interningEnabled = interningEnabled;
+        this.recentTemplates = Collections.synchronizedMap(new LinkedHashMap<String, NotificationTemplate>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, NotificationTemplate> eldest) {
+                return size() > localCacheSize;
+            }
+        });
+
+        this.templatesById = Caffeine.newBuilder()
+                .maximumWeight(cacheMaxWeight.toBytes())
+                .weigher((String id, NotificationTemplate template) -> weigh(template))
+                .recordStats()
+                .build();
+        // cache.gets{result=hit|miss}, cache.size, cache.evictions 등
+        CaffeineCacheMetrics.monitor(meterRegistry, templatesById, "notificationTemplate");
+
+        this.internRequested = Counter.builder("notification.template.intern.requested")
+                .description("저장 요청된 template 수")
+                .register(meterRegistry);
+        this.internReused = Counter.builder("notification.template.intern.reused")
+                .description("같은 내용의 기존 template을 재사용한 수")
+                .register(meterRegistry);
+        Gauge.builder("notification.template.intern.dedup.ratio", this, NotificationTemplateStore::dedupRatio)
+                .description("저장 요청 중 기존 template을 재사용한 비율")
+                .register(meterRegistry);
+    }
+
+    /**
+     * id에 해당하는 template 조회. cache에 없는 id만 findByIdIn 한 번으로 조회해서 cache에 채움. 순서는 보장하지 않음.
+     */
+    public Flux<NotificationTemplate> findAllById(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        Map<String, NotificationTemplate> cached = new HashMap<>(templatesById.getAllPresent(ids));
+        // TTL로 이미 삭제됐을 template은 mongo 결과를 따름
+        Instant now = Instant.now();
+        cached.values().removeIf(template -> isExpired(template, now));
+        if (cached.size() == ids.size()) {
+            return Flux.fromIterable(cached.values());
+        }
+        List<String> missingIds = ids.stream()
+                .filter(id -> !cached.containsKey(id))
+                .collect(Collectors.toList());
+        return Flux.concat(
+                Flux.fromIterable(cached.values()),
+                notificationTemplateRepository.findByIdIn(missingIds).doOnNext(this::cache));
+    }
+
+    /**
+     * notificationDatas와 같은 순서로 저장된(또는 재사용한) template을 반환.
+     */
+    public Mono<List<NotificationTemplate>> saveAll(List<NotificationData> notificationDatas) {
+        if (notificationDatas.isEmpty()) {
+            return Mono.just(Collections.emptyList());
+        }
+        Instant now = Instant.now();
+        if (!interningEnabled) {
+            List<NotificationTemplate> templates = notificationDatas.stream()
+                    .map(notificationData -> toTemplate(notificationData, null, now))
+                    .collect(Collectors.toList());
+            // insertAll은 같은 collection의 document를 insertMany 한 번으로 저장하고, 입력 순서대로 반환함
+            return reactiveMongoTemplate.insertAll(templates)
+                    .doOnNext(this::cache)
+                    .collectList();
+        }
+
+        int size = notificationDatas.size();
+        internRequested.increment(size);
+        NotificationTemplate[] result = new NotificationTemplate[size];
+        // 로컬에 없는 hash -> 해당 hash를 쓰는 index들
+        Map<String, List<Integer>> unresolved = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            String contentHash = contentHash(notificationDatas.get(i));
+            NotificationTemplate cached = recentTemplates.get(contentHash);
+            if (cached != null && !isExpired(cached, now)) {
+                result[i] = cached;
+            } else {
+                unresolved.computeIfAbsent(contentHash, key -> new ArrayList<>(1)).add(i);
+            }
+        }
+        if (unresolved.isEmpty()) {
+            internReused.increment(size);
+            return touch(Arrays.asList(result), now)
+                    .map(replaced -> {
+                        replace(result, replaced);
+                        return Arrays.asList(result);
+                    });
+        }
+
+        return notificationTemplateRepository.findByContentHashIn(unresolved.keySet())
+                .collectMap(NotificationTemplate::getContentHash)
+                .flatMap(existing -> {
+                    List<NotificationTemplate> templatesToInsert = new ArrayList<>();
+                    unresolved.forEach((contentHash, indexes) -> {
+                        if (!existing.containsKey(contentHash)) {
+                            templatesToInsert.add(toTemplate(notificationDatas.get(indexes.get(0)), contentHash, now));
+                        }
+                    });
+                    return insertInterned(templatesToInsert)
+                            .flatMap(inserted -> touch(result, existing.values(), now)
+                                    .map(replaced -> Tuples.of(inserted, replaced)))
+                            .map(insertedAndReplaced -> {
+                                List<NotificationTemplate> inserted = insertedAndReplaced.getT1();
+                                Map<String, NotificationTemplate> replaced = insertedAndReplaced.getT2();
+                                Map<String, NotificationTemplate> resolved = new HashMap<>(existing);
+                                resolved.replaceAll((contentHash, template) -> replaced.getOrDefault(template.getId(), template));
+                                inserted.forEach(template -> resolved.put(template.getContentHash(), template));
+                                unresolved.forEach((contentHash, indexes) -> {
+                                    NotificationTemplate template = resolved.get(contentHash);
+                                    recentTemplates.put(contentHash, template);
+                                    cache(template);
+                                    indexes.forEach(index -> result[index] = template);
+                                });
+                                replace(result, replaced);
+                                internReused.increment(size - inserted.size());
+                                return Arrays.asList(result);
+                            });
+                });
+    }
+
+    private Mono<List<NotificationTemplate>> insertInterned(List<NotificationTemplate> templates) {
+        if (templates.isEmpty()) {
+            return Mono.just(Collections.emptyList());
+        }
+        return reactiveMongoTemplate.insertAll(templates)
+                .collectList()
+                // 다른 인스턴스가 같은 내용을 먼저 저장한 경우. 하나씩 upsert 해서 먼저 저장된 template을 받아옴
+                .onErrorResume(DuplicateKeyException.class, e -> Flux.fromIterable(templates)
+                        .concatMap(this::upsertByContentHash)
+                        .collectList());
+    }
+
+    private Mono<NotificationTemplate> upsertByContentHash(NotificationTemplate template) {
+        Instant now = Instant.now();
+        Query query = Query.query(Criteria.where("contentHash").is(template.getContentHash()));
+        Update update = new Update()
+                .setOnInsert("message", template.getMessage())
+                .setOnInsert("linkUrl", template.getLinkUrl())
+                .setOnInsert("notificationType", template.getNotificationType())
+                .setOnInsert("createdAt", now)
+                .setOnInsert("updatedAt", now)
+                .max("lastReferencedAt", now)
+                .max("expireAt", retentionProperties.expireAt(template.getNotificationType(), now));
+        return reactiveMongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().upsert(true).returnNew(true), NotificationTemplate.class);
+    }
+
+    /**
+     * NotificationRetentionEngine이 삭제한 template을 로컬 cache에서 제거.
+     */
+    public void invalidate(Collection<String> ids) {
+        templatesById.invalidateAll(ids);
+        synchronized (recentTemplates) {
+            recentTemplates.values().removeIf(template -> ids.contains(template.getId()));
+        }
+    }
+
+    private Mono<Map<String, NotificationTemplate>> touch(NotificationTemplate[] resolved, Collection<NotificationTemplate> existing, Instant now) {
+        // 이번 batch에서 로컬 cache로 재사용한 것과 mongo에서 찾은 기존 template
+        List<NotificationTemplate> reused = new ArrayList<>(existing);
+        for (NotificationTemplate template : resolved) {
+            if (template != null) {
+                reused.add(template);
+            }
+        }
+        return touch(reused, now);
+    }
+
+    /*
+     * 재사용한 template 중 lastReferencedAt이 touch-interval보다 오래된 것만 type별 updateMulti로 연장.
+     * 같은 template이 계속 발송되는 동안에는 touch-interval에 한 번만 쓰기가 발생함.
+     * 다른 인스턴스의 NotificationRetentionEngine이 이미 삭제한 template은 로컬 cache에서 빼고 contentHash로 다시 저장함.
+     * 반환값은 다시 저장한 template (삭제된 id -> 새 template)
+     */
+    private Mono<Map<String, NotificationTemplate>> touch(Collection<NotificationTemplate> reused, Instant now) {
+        Instant staleBefore = now.minus(retentionProperties.getTouchInterval());
+        Map<NotificationType, List<NotificationTemplate>> staleByType = reused.stream()
+                .filter(template -> template.getLastReferencedAt() == null || template.getLastReferencedAt().isBefore(staleBefore))
+                .distinct()
+                .collect(Collectors.groupingBy(NotificationTemplate::getNotificationType));
+        if (staleByType.isEmpty()) {
+            return Mono.just(Collections.emptyMap());
+        }
+        return Flux.fromIterable(staleByType.entrySet())
+                .flatMap(entry -> {
+                    Instant expireAt = retentionProperties.expireAt(entry.getKey(), now);
+                    List<NotificationTemplate> templates = entry.getValue();
+                    List<String> ids = templates.stream().map(NotificationTemplate::getId).distinct().collect(Collectors.toList());
+                    Update update = new Update().max("lastReferencedAt", now).max("expireAt", expireAt);
+                    return reactiveMongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(ids)), update, NotificationTemplate.class)
+                            .flatMap(result -> result.getMatchedCount() == ids.size()
+                                    ? Mono.just(Collections.<String>emptySet())
+                                    : findDeletedIds(ids))
+                            .flatMapMany(deletedIds -> {
+                                templates.stream()
+                                        .filter(template -> !deletedIds.contains(template.getId()))
+                                        .forEach(template -> template.markReferenced(now, expireAt));
+                                return Flux.fromIterable(templates)
+                                        .filter(template -> deletedIds.contains(template.getId()));
+                            });
+                })
+                .flatMap(deleted -> {
+                    invalidate(Collections.singletonList(deleted.getId()));
+                    return upsertByContentHash(deleted)
+                            .doOnNext(template -> {
+                                recentTemplates.put(template.getContentHash(), template);
+                                cache(template);
+                            })
+                            .map(template -> Tuples.of(deleted.getId(), template));
+                })
+                .collectMap(Tuple2::getT1, Tuple2::getT2);
+    }
+
+    // ids 중 더 이상 없는 template의 id
+    private Mono<Set<String>> findDeletedIds(List<String> ids) {
+        Query query = Query.query(Criteria.where("_id").in(ids));
+        query.fields().include("_id");
+        return reactiveMongoTemplate.find(query, NotificationTemplate.class)
+                .map(NotificationTemplate::getId)
+                .collect(Collectors.toSet())
+                .map(found -> ids.stream()
+                        .filter(id -> !found.contains(id))
+                        .collect(Collectors.toSet()));
+    }
+
+    private static void replace(NotificationTemplate[] result, Map<String, NotificationTemplate> replaced) {
+        if (replaced.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < result.length; i++) {
+            NotificationTemplate replacement = replaced.get(result[i].getId());
+            if (replacement != null) {
+                result[i] = replacement;
+            }
+        }
+    }
+
+    private void cache(NotificationTemplate template) {
+        templatesById.put(template.getId(), template);
+    }
+
+    private static boolean isExpired(NotificationTemplate template, Instant now) {
+        return template.getExpireAt() != null && !template.getExpireAt().isAfter(now);
+    }
+
+    private static int weigh(NotificationTemplate template) {
+        int chars = length(template.getMessage()) + length(template.getLinkUrl());
+        return TEMPLATE_BASE_WEIGHT + chars * 2;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private NotificationTemplate toTemplate(NotificationData notificationData, String contentHash, Instant now) {
+        return NotificationTemplate.builder()
+                .message(notificationData.getMessage())
+                .linkUrl(notificationData.getLinkUrl())
+                .notificationType(notificationData.getNotificationType())
+                .contentHash(contentHash)
+                .lastReferencedAt(now)
+                .expireAt(retentionProperties.expireAt(notificationData.getNotificationType(), now))
+                .build();
+    }
+
+    static String contentHash(NotificationData notificationData) {
+        String content = String.valueOf(notificationData.getNotificationType()) + FIELD_SEPARATOR
+                + notificationData.getMessage() + FIELD_SEPARATOR
+                + notificationData.getLinkUrl();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256은 모든 JVM 구현에 포함되어야 함
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private double dedupRatio() {
+        double requested = internRequested.count();
+        return requested == 0 ? 0 : internReused.count() / requested;
+    }
+}
@@ -1,15 +1,12 @@
 package com.dailyon.notificationservice.domain.notification.service;
 
 import com.dailyon.notificationservice.common.exceptions.ErrorResponseException;
-import com.dailyon.notificationservice.domain.notification.document.RestockNotification;
 import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
-import com.dailyon.notificationservice.domain.notification.repository.RestockNotificationRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -17,7 +14,7 @@ import java.util.Map;
 @Component
 public class NotificationUtils {
     private final SseNotificationService sseNotificationService;
-    private final RestockNotificationRepository restockNotificationRepository;
+    private final RestockSubscriberService restockSubscriberService;
     private final RedisUtilService redisUtilService;
 
     /**
@@ -30,18 +27,55 @@ public class NotificationUtils {
     }
 
 
-    // 대상이 정해지지 않은 memberIds를 가공
-    private Mono<List<Long>> determineMemberIdsForNotification(NotificationType notificationType, Map<String, String> parameters) {
+    /**
+     * 대상 수가 많을 수 있어서 목록으로 만들지 않고 streamMemberIds로 흘려보내는 알림인지 (재입고 신청자, 경매 참여자).
+     */
+    public boolean isStreamedAudience(NotificationType notificationType, List<Long> existingMemberIds) {
+        return (existingMemberIds == null || existingMemberIds.isEmpty())
+                && (NotificationType.PRODUCT_RESTOCK.equals(notificationType) || NotificationType.AUCTION_END.equals(notificationType));
+    }
+
+    /**
+     * 대상이 정해지지 않았고 type으로 정할 수도 없는 알림은 전체 member 대상 (SQSNotificationDto.whoToNotify 참고).
+     */
+    public boolean isBroadcast(NotificationType notificationType, List<Long> existingMemberIds) {
+        return (existingMemberIds == null || existingMemberIds.isEmpty())
+                && !NotificationType.PRODUCT_RESTOCK.equals(notificationType)
+                && !NotificationType.AUCTION_END.equals(notificationType);
+    }
+
+    /**
+     * 대상 member를 읽는 대로 내보냄. 구독한 쪽이 요청한 만큼만 mongo cursor / redis SSCAN cursor에서 읽어옴.
+     */
+    public Flux<Long> streamMemberIds(NotificationType notificationType, Map<String, String> parameters) {
         if (NotificationType.PRODUCT_RESTOCK.equals(notificationType)) {
             Long productId = Long.valueOf(parameters.getOrDefault("productId", null)); // 없으면 NumberFormatException
             Long sizeId = Long.valueOf(parameters.getOrDefault("sizeId", null));
-            return restockNotificationRepository.findByProductIdAndSizeId(productId, sizeId)
-                    .map(restockNotification -> new ArrayList<>(restockNotification.getMemberIds()));
+            return restockSubscriberService.findSubscribers(productId, sizeId);
         } else if (NotificationType.AUCTION_END.equals(notificationType)) {
             String auctionId = parameters.getOrDefault("auctionId", null);
-            return redisUtilService.fetchAllAuctionMemberIds(auctionId)
-                    .collectList();
+            return redisUtilService.fetchAllAuctionMemberIds(auctionId);
         }
-        return Mono.just(Collections.emptyList());
+        return Flux.empty();
+    }
+
+    /**
+     * streamMemberIds가 내보낼 member 수. 대상을 읽지 않고 count만 조회함.
+     */
+    public Mono<Long> countMemberIds(NotificationType notificationType, Map<String, String> parameters) {
+        if (NotificationType.PRODUCT_RESTOCK.equals(notificationType)) {
+            Long productId = Long.valueOf(parameters.getOrDefault("productId", null));
+            Long sizeId = Long.valueOf(parameters.getOrDefault("sizeId", null));
+            return restockSubscriberService.countSubscribers(productId, sizeId);
+        } else if (NotificationType.AUCTION_END.equals(notificationType)) {
+            return redisUtilService.countAuctionMembers(parameters.getOrDefault("auctionId", null));
+        }
+        return Mono.just(0L);
+    }
+
+    // 대상이 정해지지 않은 memberIds를 가공. 재입고/경매 외에는 대상 없음
+    private Mono<List<Long>> determineMemberIdsForNotification(NotificationType notificationType, Map<String, String> parameters) {
+        return streamMemberIds(notificationType, parameters)
+                .collectList();
     }
 }
@@ -1,6 +1,7 @@
 package com.dailyon.notificationservice.domain.notification.service;
 
 import com.dailyon.notificationservice.domain.notification.dto.DisconnectInfoDto;
+import com.dailyon.notificationservice.domain.notification.dto.NotificationData;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
@@ -12,6 +13,7 @@ import reactor.core.publisher.Mono;
 
 import java.util.Objects;
 
+import static com.dailyon.notificationservice.config.NotificationConfig.BROADCAST_NOTIFICATION_CHANNEL;
 import static com.dailyon.notificationservice.config.NotificationConfig.MEMBER_NOTIFICATION_CONNECTION_CHANNEL;
 import static com.dailyon.notificationservice.config.NotificationConfig.UNIQUE_CONSUMER_IDENTIFIER;
 
@@ -35,6 +37,7 @@ public class RedisPubSubService {
         // 빈 생성하면서 구독 시작
         log.info("RedisPubSubService 빈을 생성하면서 구독 시작합니다.");
         subscribeToMemberConnectionChannel();
+        subscribeToBroadcastChannel();
     }
 
     private void subscribeToMemberConnectionChannel() {
@@ -46,6 +49,23 @@ public class RedisPubSubService {
 //                .subscribe(this::handleMemberDisconnection);
     }
 
+    // 발행한 인스턴스 자신도 구독자라서 로컬 연결에도 이 경로로 보냄
+    private void subscribeToBroadcastChannel() {
+        reactiveRedisTemplate.listenTo(ChannelTopic.of(BROADCAST_NOTIFICATION_CHANNEL))
+                .map(ReactiveSubscription.Message::getMessage)
+                .concatMap(this::handleBroadcast)
+                .subscribe(null, error -> log.error("broadcast 구독 중 에러", error));
+    }
+
+    private Mono<Void> handleBroadcast(String notificationDataJson) {
+        return Mono.fromCallable(() -> objectMapper.readValue(notificationDataJson, NotificationData.class))
+                .flatMap(sseNotificationService::sendSseNotificationToAllUsers)
+                .onErrorResume(e -> {
+                    log.error("handleBroadcast 도중 에러발생", e);
+                    return Mono.empty();
+                });
+    }
+
     private void handleMemberDisconnection(String disconnectInfoDtoJson) {
         try {
             DisconnectInfoDto disconnectInfoDto = objectMapper.readValue(disconnectInfoDtoJson, DisconnectInfoDto.class);
@@ -76,4 +96,11 @@ public class RedisPubSubService {
                 })
                 .then();
     }
+
+    public Mono<Void> publishBroadcast(NotificationData notificationData) {
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(notificationData))
+                .flatMap(jsonData -> reactiveRedisTemplate.convertAndSend(BROADCAST_NOTIFICATION_CHANNEL, jsonData))
+                .doOnError(e -> log.error("publishBroadcast 도중 에러발생", e))
+                .then();
+    }
 }
@@ -0,0 +1,138 @@
+package com.dailyon.notificationservice.domain.notification.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static com.dailyon.notificationservice.config.NotificationConfig.CONSUMER_GROUP_NAME;
+import static com.dailyon.notificationservice.config.NotificationConfig.INSTANCE_INBOX_STREAM_KEY;
+import static com.dailyon.notificationservice.config.NotificationConfig.NOTIFICATIONS_STREAM_KEY;
+import static com.dailyon.notificationservice.config.NotificationConfig.UNIQUE_CONSUMER_IDENTIFIER;
+import static com.dailyon.notificationservice.config.NotificationConfig.instanceInboxStreamKey;
+
+/**
+ * 인스턴스 inbox stream 구독 준비와 consumer group 수명 관리.
+ * 1. 인스턴스를 registry(set)에 등록하고 TTL이 있는 heartbeat key를 주기적으로 갱신
+ * 2. inbox stream은 프로세스마다 새 key라서 처음(0-0)부터 읽는 instance group 생성.
+ *    directory 등록 직후 다른 인스턴스가 group 생성보다 먼저 쓴 entry도 놓치지 않음
+ * 3. heartbeat key가 만료된(일정 시간 이상 사라진) 인스턴스의 inbox stream과 group을 정리
+ * 4. notification.stream.legacy-group-cleanup.enabled=true일 때만 공유 stream의 예전 group 정리.
+ *    이전 버전 pod은 heartbeat key를 쓰지 않으므로 rolling 배포가 끝난 뒤에 켜야 함
+ */
+@Slf4j
+@Component
+public class RedisStreamBootstrap {
+    private static final String INSTANCE_REGISTRY_KEY = "notification:instances";
+    private static final String INSTANCE_HEARTBEAT_KEY_PREFIX = "notification:instance:";
+
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final Duration heartbeatTtl;
+    private final boolean legacyGroupCleanupEnabled;
+    private final Timer bootstrapTimer;
+    private final Counter orphanGroupsRemoved;
+
+    public RedisStreamBootstrap(
+            ReactiveRedisTemplate<String, String> reactiveRedisTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${notification.instance.heartbeat-ttl:2m}") Duration heartbeatTtl,
+            @Value("${notification.stream.legacy-group-cleanup.enabled:false}") boolean legacyGroupCleanupEnabled) {
+        this.reactiveRedisTemplate = Objects.requireNonNull(reactiveRedisTemplate);
+        this.heartbeatTtl = heartbeatTtl;
+        this.legacyGroupCleanupEnabled = legacyGroupCleanupEnabled;
+        this.bootstrapTimer = Timer.builder("notification.stream.bootstrap")
+                .description("inbox stream 구독 준비에 걸린 시간")
+                .register(meterRegistry);
+        this.orphanGroupsRemoved = Counter.builder("notification.stream.orphan.groups.removed")
+                .description("사라진 인스턴스의 정리된 consumer group 수")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 인스턴스 등록 후 inbox stream에 instance group을 만든다. 완료되면 바로 consume 시작 가능.
+     */
+    public Mono<Void> bootstrap() {
+        long startedAt = System.nanoTime();
+        return registerInstance()
+                .then(reactiveRedisTemplate.opsForStream()
+                        .createGroup(INSTANCE_INBOX_STREAM_KEY, ReadOffset.from("0-0"), UNIQUE_CONSUMER_IDENTIFIER)
+                        .onErrorResume(e -> {
+                            log.warn("consumer group 생성 실패 (이미 존재할 수 있음): {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .doOnTerminate(() -> {
+                    long elapsed = System.nanoTime() - startedAt;
+                    bootstrapTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                    log.info("inbox stream bootstrap 완료 {}ms", TimeUnit.NANOSECONDS.toMillis(elapsed));
+                })
+                .then();
+    }
+
+    @Scheduled(fixedRate = 15000)
+    public void renewInstanceHeartbeat() {
+        registerInstance()
+                .subscribe(null, error -> log.error("인스턴스 heartbeat 갱신 중 에러", error));
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void removeOrphanedGroups() {
+        Flux.merge(removeOrphanedInstances(), removeLegacySharedStreamGroups())
+                .reduce(0L, Long::sum)
+                .subscribe(removed -> {
+                    if (removed > 0) {
+                        log.info("사라진 인스턴스의 consumer group {}개 정리", removed);
+                    }
+                }, error -> log.error("consumer group 정리 중 에러", error));
+    }
+
+    private Mono<Void> registerInstance() {
+        return reactiveRedisTemplate.opsForSet().add(INSTANCE_REGISTRY_KEY, UNIQUE_CONSUMER_IDENTIFIER)
+                .then(reactiveRedisTemplate.opsForValue()
+                        .set(heartbeatKey(UNIQUE_CONSUMER_IDENTIFIER), String.valueOf(System.currentTimeMillis()), heartbeatTtl))
+                .then();
+    }
+
+    // registry에 있지만 heartbeat key가 만료된 인스턴스의 inbox stream(group 포함)을 삭제
+    private Mono<Long> removeOrphanedInstances() {
+        return reactiveRedisTemplate.opsForSet().members(INSTANCE_REGISTRY_KEY)
+                .filter(instanceId -> !UNIQUE_CONSUMER_IDENTIFIER.equals(instanceId))
+                .filterWhen(instanceId -> reactiveRedisTemplate.hasKey(heartbeatKey(instanceId)).map(alive -> !alive))
+                .concatMap(instanceId -> reactiveRedisTemplate.delete(instanceInboxStreamKey(instanceId))
+                        .then(reactiveRedisTemplate.opsForSet().remove(INSTANCE_REGISTRY_KEY, instanceId))
+                        .thenReturn(1L))
+                .doOnNext(removed -> orphanGroupsRemoved.increment())
+                .reduce(0L, Long::sum);
+    }
+
+    // 인스턴스별 inbox 도입 전, 공유 stream에 인스턴스마다 만들고 지우지 않던 group 정리
+    private Mono<Long> removeLegacySharedStreamGroups() {
+        if (!legacyGroupCleanupEnabled) {
+            return Mono.just(0L);
+        }
+        return reactiveRedisTemplate.hasKey(NOTIFICATIONS_STREAM_KEY)
+                .filter(Boolean::booleanValue)
+                .flatMapMany(exists -> reactiveRedisTemplate.opsForStream().groups(NOTIFICATIONS_STREAM_KEY))
+                .map(group -> group.groupName())
+                .filter(groupName -> groupName.startsWith(CONSUMER_GROUP_NAME))
+                .filterWhen(groupName -> reactiveRedisTemplate.hasKey(heartbeatKey(groupName)).map(alive -> !alive))
+                .concatMap(groupName -> reactiveRedisTemplate.opsForStream().destroyGroup(NOTIFICATIONS_STREAM_KEY, groupName)
+                        .thenReturn(1L))
+                .doOnNext(removed -> orphanGroupsRemoved.increment())
+                .reduce(0L, Long::sum);
+    }
+
+    private static String heartbeatKey(String instanceId) {
+        return INSTANCE_HEARTBEAT_KEY_PREFIX + instanceId + ":heartbeat";
+    }
+}
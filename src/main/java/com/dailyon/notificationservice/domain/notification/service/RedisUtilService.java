@@ -1,27 +1,60 @@
 package com.dailyon.notificationservice.domain.notification.service;
 
 
-import com.dailyon.notificationservice.config.NotificationConfig;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Range;
-import org.springframework.data.redis.connection.RedisZSetCommands;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.ReactiveSetOperations;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
-@RequiredArgsConstructor
 @Service
 public class RedisUtilService {
-    private final ReactiveRedisTemplate<String, Long> reactiveRedisTemplate;
     private final ReactiveSetOperations<String, Long> reactiveSetOperations;
+    private final ScanOptions auctionScanOptions;
+    private final Counter auctionMembersFetched;
+    private final Counter auctionFetchErrors;
+
+    public RedisUtilService(
+            ReactiveSetOperations<String, Long> reactiveSetOperations,
+            MeterRegistry meterRegistry,
+            @Value("${notification.auction.scan-count:500}") long scanCount) {
+        this.reactiveSetOperations = reactiveSetOperations;
+        this.auctionScanOptions = ScanOptions.scanOptions().count(scanCount).build();
+        this.auctionMembersFetched = Counter.builder("notification.auction.members.fetched")
+                .description("경매 종료 알림 대상으로 읽은 member 수")
+                .register(meterRegistry);
+        this.auctionFetchErrors = Counter.builder("notification.auction.members.fetch.errors")
+                .description("경매 참여자 조회 실패 수")
+                .register(meterRegistry);
+    }
 
+    /*
+     * SMEMBERS 대신 SSCAN cursor로 scan-count개씩 읽음. 참여자가 많아도 shard를 한 번에 오래 잡지 않고,
+     * 구독한 쪽이 요청한 만큼만 다음 cursor를 읽으므로 앞쪽 chunk는 전체를 다 읽기 전에 발송됨
+     */
     public Flux<Long> fetchAllAuctionMemberIds(String auctionId) {
-        return reactiveSetOperations.members(auctionId)
-                .doOnNext(memberId -> log.info("Fetched auction member ID: {}", memberId))
-                .doOnError(error -> log.error("Error fetching auction member IDs for Auction ID: {}, error: {}", auctionId, error.getMessage()))
-                .doOnComplete(() -> log.info("Completed fetching auction member IDs for Auction ID: {}", auctionId));
+        AtomicLong fetched = new AtomicLong();
+        return reactiveSetOperations.scan(auctionId, auctionScanOptions)
+                .doOnNext(memberId -> {
+                    fetched.incrementAndGet();
+                    auctionMembersFetched.increment();
+                })
+                .doOnError(error -> {
+                    auctionFetchErrors.increment();
+                    log.error("Error fetching auction member IDs for Auction ID: {}, error: {}", auctionId, error.getMessage());
+                })
+                .doOnComplete(() -> log.info("Completed fetching {} auction member IDs for Auction ID: {}", fetched.get(), auctionId));
+    }
+
+    // fan-out 방식을 고르기 위한 경매 참여자 수 (SCARD)
+    public Mono<Long> countAuctionMembers(String auctionId) {
+        return reactiveSetOperations.size(auctionId);
     }
 }
@@ -0,0 +1,138 @@
+package com.dailyon.notificationservice.domain.notification.service;
+
+import com.dailyon.notificationservice.domain.notification.document.RestockNotification;
+import com.dailyon.notificationservice.domain.notification.document.RestockSubscriberBucket;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 재입고 알림 신청자 관리. 신청자는 RestockSubscriberBucket에 bucket-size명씩 나눠 저장한다.
+ * 신청은 열린 bucket 하나에 대한 upsert 한 번이라 동시에 신청해도 서로 덮어쓰지 않고, 해제/초기화도 bucket 단위 update/delete로 끝남.
+ * 이전 방식(restock_notification의 memberIds)으로 신청한 member는 읽기/해제만 하고 새로 쓰지 않음.
+ */
+@Slf4j
+@Service
+public class RestockSubscriberService {
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final int bucketSize;
+
+    public RestockSubscriberService(
+            ReactiveMongoTemplate reactiveMongoTemplate,
+            @Value("${notification.restock.bucket-size:1000}") int bucketSize) {
+        this.reactiveMongoTemplate = Objects.requireNonNull(reactiveMongoTemplate);
+        this.bucketSize = bucketSize;
+    }
+
+    /**
+     * 신청한 bucket id를 반환. 이미 신청한 member면 기존 bucket id.
+     */
+    public Mono<String> subscribe(Long productId, Long sizeId, Long memberId) {
+        Query subscribed = productQuery(productId, sizeId).addCriteria(Criteria.where("memberIds").is(memberId));
+        subscribed.fields().include("_id");
+        return reactiveMongoTemplate.findOne(subscribed, RestockSubscriberBucket.class)
+                .map(RestockSubscriberBucket::getId)
+                .switchIfEmpty(Mono.defer(() -> reactiveMongoTemplate.findOne(subscribed, RestockNotification.class)
+                        .map(RestockNotification::getId)))
+                .switchIfEmpty(Mono.defer(() -> addToOpenBucket(productId, sizeId, memberId)));
+    }
+
+    /*
+     * count < bucket-size인 bucket에 추가. 없으면 upsert로 새 bucket 생성.
+     * $addToSet 뒤 $inc는 같은 member가 동시에 두 번 신청하면 count가 어긋나므로 같은 update 안에서 크기를 다시 계산함
+     */
+    private Mono<String> addToOpenBucket(Long productId, Long sizeId, Long memberId) {
+        Document openBucket = new Document("productId", productId)
+                .append("sizeId", sizeId)
+                .append("count", new Document("$lt", bucketSize));
+        List<Document> update = Arrays.asList(
+                new Document("$set", new Document("memberIds", new Document("$setUnion", Arrays.asList(
+                        new Document("$ifNull", Arrays.asList("$memberIds", Collections.emptyList())),
+                        new Document("$literal", Collections.singletonList(memberId)))))),
+                new Document("$set", new Document("count", new Document("$size", "$memberIds"))));
+        FindOneAndUpdateOptions options = new FindOneAndUpdateOptions()
+                .upsert(true)
+                .returnDocument(ReturnDocument.AFTER)
+                .projection(new Document("_id", 1));
+
+        String collectionName = reactiveMongoTemplate.getCollectionName(RestockSubscriberBucket.class);
+        return reactiveMongoTemplate.getCollection(collectionName)
+                .flatMap(collection -> Mono.from(collection.findOneAndUpdate(openBucket, update, options)))
+                .map(bucket -> String.valueOf(bucket.get("_id")));
+    }
+
+    // 재전송된 message를 이어서 처리할 때 fan-out chunk 경계가 같도록 bucket은 생성 순서로 읽음
+    public Flux<Long> findSubscribers(Long productId, Long sizeId) {
+        Query bucketQuery = productQuery(productId, sizeId).with(Sort.by(Sort.Direction.ASC, "_id"));
+        bucketQuery.fields().include("memberIds");
+        return Flux.concat(
+                reactiveMongoTemplate.find(bucketQuery, RestockSubscriberBucket.class)
+                        .flatMapIterable(RestockSubscriberBucket::getMemberIds),
+                reactiveMongoTemplate.find(productQuery(productId, sizeId), RestockNotification.class)
+                        .flatMapIterable(RestockNotification::getMemberIds));
+    }
+
+    // fan-out 방식을 고르기 위한 신청자 수. bucket은 count 합, 이전 방식은 memberIds 크기 합
+    public Mono<Long> countSubscribers(Long productId, Long sizeId) {
+        Criteria product = Criteria.where("productId").is(productId).and("sizeId").is(sizeId);
+        Aggregation bucketCount = Aggregation.newAggregation(
+                Aggregation.match(product),
+                Aggregation.group().sum("count").as("total"));
+        Aggregation legacyCount = Aggregation.newAggregation(
+                Aggregation.match(product),
+                Aggregation.group().sum(ArrayOperators.Size.lengthOfArray(
+                        ConditionalOperators.ifNull("memberIds").then(Collections.emptyList()))).as("total"));
+        return Flux.concat(
+                        reactiveMongoTemplate.aggregate(bucketCount, RestockSubscriberBucket.class, Document.class),
+                        reactiveMongoTemplate.aggregate(legacyCount, RestockNotification.class, Document.class))
+                .map(document -> ((Number) document.get("total")).longValue())
+                .reduce(0L, Long::sum);
+    }
+
+    // 신청 해제. member가 있는 bucket만 수정하고 count를 다시 계산하므로 그 bucket은 다시 신청을 받음
+    public Mono<Void> unsubscribe(Long productId, Long sizeId, Long memberId) {
+        Query subscribed = productQuery(productId, sizeId).addCriteria(Criteria.where("memberIds").is(memberId));
+        Document filter = new Document("productId", productId)
+                .append("sizeId", sizeId)
+                .append("memberIds", memberId);
+        List<Document> update = Arrays.asList(
+                new Document("$set", new Document("memberIds", new Document("$setDifference", Arrays.asList(
+                        "$memberIds", new Document("$literal", Collections.singletonList(memberId)))))),
+                new Document("$set", new Document("count", new Document("$size", "$memberIds"))));
+
+        String collectionName = reactiveMongoTemplate.getCollectionName(RestockSubscriberBucket.class);
+        Mono<?> buckets = reactiveMongoTemplate.getCollection(collectionName)
+                .flatMap(collection -> Mono.from(collection.updateMany(filter, update)));
+        Mono<?> legacy = reactiveMongoTemplate.updateFirst(subscribed, new Update().pull("memberIds", memberId), RestockNotification.class);
+        return Mono.when(buckets, legacy);
+    }
+
+    // 재입고 알림 발송 후 신청자 초기화
+    public Mono<Void> clear(Long productId, Long sizeId) {
+        return Mono.when(
+                reactiveMongoTemplate.remove(productQuery(productId, sizeId), RestockSubscriberBucket.class),
+                reactiveMongoTemplate.remove(productQuery(productId, sizeId), RestockNotification.class));
+    }
+
+    private static Query productQuery(Long productId, Long sizeId) {
+        return Query.query(Criteria.where("productId").is(productId).and("sizeId").is(sizeId));
+    }
+}
@@ -3,25 +3,28 @@ package com.dailyon.notificationservice.domain.notification.service;
 
 import com.dailyon.notificationservice.domain.notification.dto.NotificationData;
 import com.dailyon.notificationservice.domain.notification.repository.NotificationTemplateRepository;
-import com.dailyon.notificationservice.domain.notification.repository.RestockNotificationRepository;
 import com.dailyon.notificationservice.domain.notification.repository.UserNotificationRepository;
+import com.dailyon.notificationservice.domain.notification.sse.SseConnection;
+import com.dailyon.notificationservice.domain.notification.sse.SseConnectionRegistry;
+import com.dailyon.notificationservice.domain.notification.sse.SseFrame;
+import com.dailyon.notificationservice.domain.notification.sse.SseFrameEncoder;
+import com.dailyon.notificationservice.domain.notification.sse.SseHeartbeatScheduler;
+import com.dailyon.notificationservice.domain.notification.sse.SseOutboundPolicy;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 
-import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
-import reactor.core.publisher.Sinks;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import javax.annotation.PostConstruct;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 
 @Slf4j
@@ -30,97 +33,134 @@ import java.util.stream.Collectors;
 public class SseNotificationService {
     private final NotificationTemplateRepository notificationTemplateRepository;
     private final UserNotificationRepository userNotificationRepository;
-    private final RestockNotificationRepository restockNotificationRepository;
+    private final RestockSubscriberService restockSubscriberService;
     private final ReactiveMongoTemplate reactiveMongoTemplate;
 
-    private final Map<Long, Sinks.Many<ServerSentEvent<NotificationData>>> userSinks = new ConcurrentHashMap<>();
-
-    // 구독하기. 구독 SSE 객체에는 client에게 줄 notificationData를 넣어준다.
-    public Flux<ServerSentEvent<NotificationData>> streamNotifications(Long memberId) {
-        // log.info(memberId + "새연결, 먼저 userSinks에서 제거");
-        userSinks.remove(memberId); // 새연결시 일단 제거
-
-        log.info("Creating new SSE Sink for memberId: {}", memberId);
-        Sinks.Many<ServerSentEvent<NotificationData>> sink = Sinks.many().multicast().onBackpressureBuffer();
-        userSinks.put(memberId, sink);
-
-        // log.info("새로 구독 후 확인");
-        // log.info(userSinks.entrySet() // Entry set 방문
-        //         .stream() // 스트림으로 변환
-        //         .map(entry -> {
-        //             Long userId = entry.getKey(); // 키는 사용자 ID
-        //             Sinks.Many<ServerSentEvent<NotificationData>> a = entry.getValue(); // 값은 Sinks.Many
-        //             int subscriberCount = a.currentSubscriberCount(); // 현재 구독자 수 얻기
-        //             return userId + " -> " + subscriberCount + " subscribers";
-        //         })
-        //         .collect(Collectors.joining(", ", "{", "}")));
-
-        Consumer<Throwable> removeSinkConsumer = e -> {
-            userSinks.remove(memberId);
-            log.info("Remove SSE Sink for memberId: {} due to error", memberId, e);
-        };
-
-        return sink.asFlux()
-                .doOnCancel(() -> removeSinkConsumer.accept(null))
-                .doOnError(removeSinkConsumer);
+    private final SseFrameEncoder sseFrameEncoder;
+    private final SseHeartbeatScheduler sseHeartbeatScheduler;
+    private final SseOutboundPolicy sseOutboundPolicy;
+    private final MeterRegistry meterRegistry;
+    private final ConnectionDirectoryService connectionDirectoryService;
+
+    private final SseConnectionRegistry<SseConnection> userSinks = new SseConnectionRegistry<>();
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("notification.sse.connections", userSinks, SseConnectionRegistry::size)
+                .description("현재 인스턴스의 SSE 연결 수")
+                .register(meterRegistry);
+        Gauge.builder("notification.sse.outbound.queue.depth", this, service -> service.sumQueueDepth())
+                .description("모든 연결의 송신 대기 frame 수 합계")
+                .register(meterRegistry);
+        Gauge.builder("notification.sse.outbound.queue.depth.max", this, service -> service.maxQueueDepth())
+                .description("연결별 송신 대기 frame 수 최대값")
+                .register(meterRegistry);
     }
 
-    private Mono<Void> sendSseNotificationToUser(NotificationData data, Long memberId) {
-//        log.info("단일 유저에게 발송합니다.: {}", memberId);
-        return Mono.fromRunnable(() -> {
-            Optional.ofNullable(userSinks.get(memberId)).ifPresent(sink -> {
-                log.info("memberId: {}를 찾았습니다. 이제 메세지 발송합니다.", memberId);
-                sink.tryEmitNext(ServerSentEvent.<NotificationData>builder()
-                                .data(data)
-                                .build())
-                        .orThrow();
-            });
+    // 구독하기. 연결에는 client에게 줄 notificationData가 인코딩된 SSE frame을 넣어준다.
+    public Flux<SseFrame> streamNotifications(Long memberId) {
+        log.info("Creating new SSE Sink for memberId: {}", memberId);
+        SseConnection connection = new SseConnection(memberId, sseOutboundPolicy, evicted -> {
+            log.info("느린 client로 판단되어 SSE 연결을 끊습니다. memberId: {}", memberId);
+            sseHeartbeatScheduler.unregister(evicted);
+            if (userSinks.remove(memberId, evicted)) {
+                connectionDirectoryService.release(memberId).subscribe();
+            }
         });
+        SseConnection previousConnection = userSinks.put(memberId, connection); // 새연결시 기존 연결 교체
+        if (previousConnection != null) {
+            closeConnection(previousConnection);
+        }
+        sseHeartbeatScheduler.register(connection);
+        connectionDirectoryService.register(memberId).subscribe(); // 미연결 알림을 이 인스턴스 inbox로 받기 위해 등록
+
+        // 취소/에러뿐 아니라 정상 종료(heartbeat 최대 횟수 도달 등)에도 정리해야 이미 끝난 연결로 알림을 보내지 않음
+        return connection.asFlux()
+                .doFinally(signal -> {
+                    if (userSinks.remove(memberId, connection)) { // 재연결로 교체된 새 연결은 지우지 않음
+                        connectionDirectoryService.release(memberId).subscribe();
+                    }
+                    closeConnection(connection);
+                    log.info("Remove SSE Sink for memberId: {} ({})", memberId, signal);
+                });
     }
 
+    /*
+     * fan-out 한 번에 payload는 한 번만 직렬화하고, 인코딩된 frame(byte[])을 모든 대상 연결이 복사 없이 공유한다.
+     */
     public Mono<Void> sendNotificationToConnectedUsers(List<Long> memberIds, NotificationData notificationData) {
 //        log.info("연결된 유저들에게 발송합니다.: {}", memberIds.toString());
-        return Flux.fromIterable(memberIds)
-                .flatMap(memberId -> sendSseNotificationToUser(notificationData, memberId))
-                .then();
+        return Mono.fromCallable(() -> sseFrameEncoder.encode(notificationData))
+                .flatMap(frame -> sendFrameToConnectedUsers(memberIds, frame));
+    }
+
+    public Mono<Void> sendFrameToConnectedUsers(List<Long> memberIds, SseFrame frame) {
+        return Mono.fromRunnable(() -> {
+            int delivered = 0;
+            for (Long memberId : memberIds) {
+                SseConnection connection = userSinks.get(memberId);
+                if (connection != null && connection.send(frame)) {
+                    delivered++;
+                }
+            }
+            log.debug("SSE 발송 완료 - 대상: {}, 발송: {}", memberIds.size(), delivered);
+        });
     }
 
-    private Mono<Void> sendSseNotificationToAllUsers(NotificationData data) {
+    // broadcast. 인코딩한 frame 하나를 이 인스턴스의 모든 연결이 공유
+    public Mono<Void> sendSseNotificationToAllUsers(NotificationData data) {
         log.info("모든 유저에게 메세지 발송할것입니다.");
-        return Flux.fromIterable(new ArrayList<>(userSinks.keySet()))
-                .flatMap(memberId -> sendSseNotificationToUser(data, memberId)).then();
+        return Mono.fromCallable(() -> sseFrameEncoder.encode(data))
+                .doOnNext(frame -> {
+                    int[] delivered = new int[1];
+                    userSinks.forEach((memberId, connection) -> {
+                        if (connection.send(frame)) {
+                            delivered[0]++;
+                        }
+                    });
+                    log.debug("broadcast SSE 발송 완료 - 연결: {}, 발송: {}", userSinks.size(), delivered[0]);
+                })
+                .then();
     }
 
     public Mono<Void> clearProductRestockNotifications(Long productId, Long sizeId) {
-        return restockNotificationRepository.findByProductIdAndSizeId(productId, sizeId)
-                .flatMap(restockNotification -> {
-                    restockNotification.getMemberIds().clear();
-                    return restockNotificationRepository.save(restockNotification);
-                }).then();
+        return restockSubscriberService.clear(productId, sizeId);
     }
 
 
     public boolean isUserConnected(Long memberId) {
-        return userSinks.containsKey(memberId);
+        return userSinks.contains(memberId);
+    }
+
+    // 대상 memberIds를 한 번의 순회로 연결/미연결로 분리
+    public SseConnectionRegistry.Partition partitionByConnection(List<Long> memberIds) {
+        return userSinks.partition(memberIds);
     }
 
     public void disconnectMember(Long memberId) {
         log.info("Disconnecting SSE sink for memberId: {}", memberId);
-        Sinks.Many<ServerSentEvent<NotificationData>> sink = userSinks.remove(memberId);
-
-        // log.info("제거 후 확인");
-        // log.info(userSinks.entrySet() // Entry set 방문
-        //         .stream() // 스트림으로 변환
-        //         .map(entry -> {
-        //             Long userId = entry.getKey(); // 키는 사용자 ID
-        //             Sinks.Many<ServerSentEvent<NotificationData>> a = entry.getValue(); // 값은 Sinks.Many
-        //             int subscriberCount = a.currentSubscriberCount(); // 현재 구독자 수 얻기
-        //             return userId + " -> " + subscriberCount + " subscribers";
-        //         })
-        //         .collect(Collectors.joining(", ", "{", "}")));
-
-        if (sink != null) {
-            sink.emitComplete(Sinks.EmitFailureHandler.FAIL_FAST);
+        SseConnection connection = userSinks.remove(memberId);
+        if (connection != null) {
+            closeConnection(connection);
+            // 다른 인스턴스로 재연결된 경우 lease는 이미 그쪽 소유라 release 해도 지워지지 않음
+            connectionDirectoryService.release(memberId).subscribe();
         }
     }
+
+    private double sumQueueDepth() {
+        long[] depth = new long[1];
+        userSinks.forEach((memberId, connection) -> depth[0] += connection.queueDepth());
+        return depth[0];
+    }
+
+    private double maxQueueDepth() {
+        int[] max = new int[1];
+        userSinks.forEach((memberId, connection) -> max[0] = Math.max(max[0], connection.queueDepth()));
+        return max[0];
+    }
+
+    private void closeConnection(SseConnection connection) {
+        sseHeartbeatScheduler.unregister(connection);
+        connection.complete();
+    }
 }
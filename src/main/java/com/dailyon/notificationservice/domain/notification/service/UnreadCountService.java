@@ -0,0 +1,236 @@
+package com.dailyon.notificationservice.domain.notification.service;
+
+import com.dailyon.notificationservice.domain.notification.document.UserNotification;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.dailyon.notificationservice.config.NotificationConfig.UNIQUE_CONSUMER_IDENTIFIER;
+import static com.dailyon.notificationservice.config.NotificationConfig.UNREAD_COUNT_KEY_PREFIX;
+
+/**
+ * user_notification.unreadCount 관리.
+ * unread를 바꾸는 update는 모두 unreadCount도 같은 update 안에서 갱신하므로 /count는 필드 하나만 읽음.
+ * 알림 추가는 unread에 없을 때만 넣고 unreadCount를 1 올리며(addUnreadWriteModels), 그 밖의 변경은 unread 크기로 다시 계산함.
+ * notification.unread-count.redis-mirror.enabled=true면 redis에 read-through로 두고, 쓰기마다 key를 지움.
+ * 배포 전에 생겨서 unreadCount가 없는 document는 reconcile 작업이 주기적으로 unread 크기로 채운다 (한 인스턴스만 진행).
+ */
+@Slf4j
+@Service
+public class UnreadCountService {
+    private static final int EVICT_CONCURRENCY = 64;
+    private static final String RECONCILE_LOCK_KEY = "notification:unread-count:reconcile:lock";
+
+    // 만료 후 다른 인스턴스가 가져간 lock은 지우지 않음
+    private static final RedisScript<Long> RELEASE_LOCK_SCRIPT = RedisScript.of(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final boolean redisMirrorEnabled;
+    private final Duration redisMirrorTtl;
+    private final int reconcileBatchSize;
+
+    private final AtomicBoolean reconcileRunning = new AtomicBoolean();
+    private final Counter repairedDocuments;
+
+    public UnreadCountService(
+            ReactiveMongoTemplate reactiveMongoTemplate,
+            ReactiveRedisTemplate<String, String> reactiveRedisTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${notification.unread-count.redis-mirror.enabled:false}") boolean redisMirrorEnabled,
+            @Value("${notification.unread-count.redis-mirror.ttl:10m}") Duration redisMirrorTtl,
+            @Value("${notification.unread-count.reconcile.batch-size:500}") int reconcileBatchSize) {
+        this.reactiveMongoTemplate = Objects.requireNonNull(reactiveMongoTemplate);
+        this.reactiveRedisTemplate = Objects.requireNonNull(reactiveRedisTemplate);
+        this.redisMirrorEnabled = redisMirrorEnabled;
+        this.redisMirrorTtl = redisMirrorTtl;
+        this.reconcileBatchSize = reconcileBatchSize;
+        this.repairedDocuments = Counter.builder("notification.unread.count.repaired")
+                .description("reconcile 작업이 unreadCount를 바로잡은 document 수")
+                .register(meterRegistry);
+    }
+
+    public Mono<Integer> count(Long memberId) {
+        if (!redisMirrorEnabled) {
+            return countFromMongo(memberId);
+        }
+        String key = mirrorKey(memberId);
+        return reactiveRedisTemplate.opsForValue().get(key)
+                .map(Integer::valueOf)
+                .switchIfEmpty(Mono.defer(() -> countFromMongo(memberId)
+                        .flatMap(count -> reactiveRedisTemplate.opsForValue()
+                                .set(key, String.valueOf(count), redisMirrorTtl)
+                                .thenReturn(count))))
+                .onErrorResume(e -> {
+                    log.warn("unread count redis 조회 실패 memberId: {} - {}", memberId, e.getMessage());
+                    return countFromMongo(memberId);
+                });
+    }
+
+    /**
+     * unread가 바뀐 member의 redis 값 제거. mirror를 쓰지 않으면 아무것도 안 함.
+     */
+    public Mono<Void> evict(Collection<Long> memberIds) {
+        if (!redisMirrorEnabled || memberIds.isEmpty()) {
+            return Mono.empty();
+        }
+        // cluster에서는 key마다 slot이 다르므로 하나씩 지움
+        return Flux.fromIterable(memberIds)
+                .flatMap(memberId -> reactiveRedisTemplate.delete(mirrorKey(memberId)), EVICT_CONCURRENCY)
+                .onErrorResume(e -> {
+                    log.warn("unread count redis 삭제 실패 - {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    public Mono<Void> evict(Long memberId) {
+        return evict(Collections.singletonList(memberId));
+    }
+
+    @Scheduled(fixedDelay = 600000)
+    public void reconcile() {
+        if (!reconcileRunning.compareAndSet(false, true)) {
+            return;
+        }
+        // unreadCount index로 아직 채워지지 않은 document만 찾음
+        Document missing = new Document("unreadCount", new Document("$exists", false));
+        String collectionName = reactiveMongoTemplate.getCollectionName(UserNotification.class);
+
+        // 여러 인스턴스 중 하나만 진행
+        reactiveRedisTemplate.opsForValue().setIfAbsent(RECONCILE_LOCK_KEY, UNIQUE_CONSUMER_IDENTIFIER, Duration.ofMinutes(5))
+                .filter(Boolean::booleanValue)
+                .flatMap(locked -> reactiveMongoTemplate.getCollection(collectionName)
+                        .flatMapMany(collection -> Flux.from(collection.find(missing)
+                                        .projection(new Document("memberId", 1))
+                                        .limit(reconcileBatchSize))
+                                // 그 사이 채워졌으면 건드리지 않음
+                                .concatMap(document -> Mono.from(collection.updateOne(
+                                                new Document("_id", document.get("_id")).append("unreadCount", new Document("$exists", false)),
+                                                recountPipeline()))
+                                        .thenReturn(document.get("memberId", Long.class))))
+                        .collectList()
+                        .flatMap(memberIds -> evict(memberIds).thenReturn(memberIds.size()))
+                        .flatMap(repaired -> reactiveRedisTemplate.execute(RELEASE_LOCK_SCRIPT,
+                                        Collections.singletonList(RECONCILE_LOCK_KEY),
+                                        Collections.singletonList(UNIQUE_CONSUMER_IDENTIFIER))
+                                .then(Mono.just(repaired))))
+                .doFinally(signal -> reconcileRunning.set(false))
+                .subscribe(repaired -> {
+                    if (repaired > 0) {
+                        repairedDocuments.increment(repaired);
+                        log.info("unreadCount {}건 보정", repaired);
+                    }
+                }, error -> log.error("unreadCount 보정 중 에러", error));
+    }
+
+    /*
+     * member 한 명의 unread에 templateIds를 넣고 read에서 빼는 write model을 models에 추가. template 하나당 update 하나.
+     * unread에 없을 때만 반영하고 unreadCount를 1 올리므로 재전송이나 이미 있는 id는 세지 않음.
+     * unreadCount가 없는 이전 document는 같은 update 안에서 unread 크기로 채운 뒤 더하므로 operation 순서와 무관함 (unordered bulkWrite 가능)
+     */
+    static void addUnreadWriteModels(List<WriteModel<Document>> models, Long memberId, List<String> templateIds) {
+        for (String templateId : templateIds) {
+            models.add(new UpdateOneModel<>(
+                    new Document("memberId", memberId).append("unread", new Document("$ne", templateId)),
+                    addUnreadPipeline(templateId)));
+        }
+    }
+
+    // $set 안의 필드는 모두 update 전 값으로 계산되므로 unreadCount는 추가 전 unread 크기 + 1
+    private static List<Document> addUnreadPipeline(String templateId) {
+        return Collections.singletonList(new Document("$set",
+                new Document("unreadCount", new Document("$add", Arrays.asList(
+                        new Document("$ifNull", Arrays.asList("$unreadCount", new Document("$size", field("unread")))), 1)))
+                        .append("unread", new Document("$concatArrays", Arrays.asList(
+                                field("unread"), new Document("$literal", Collections.singletonList(templateId)))))
+                        .append("read", new Document("$filter", new Document("input", field("read"))
+                                .append("cond", new Document("$ne", Arrays.asList("$$this", templateId)))))));
+    }
+
+    // templateId를 unread에서 read로 옮김
+    static List<Document> markAsReadPipeline(String templateId) {
+        Document ids = new Document("$literal", Collections.singletonList(templateId));
+        return Arrays.asList(
+                new Document("$set", new Document("unread", new Document("$setDifference", Arrays.asList(field("unread"), ids)))
+                        .append("read", new Document("$setUnion", Arrays.asList(field("read"), ids)))),
+                recountStage());
+    }
+
+    // unread 전체를 read로 옮김
+    static List<Document> markAllAsReadPipeline() {
+        return Collections.singletonList(new Document("$set",
+                new Document("read", new Document("$setUnion", Arrays.asList(field("read"), field("unread"))))
+                        .append("unread", new Document("$literal", Collections.emptyList()))
+                        .append("unreadCount", 0)));
+    }
+
+    static List<Document> removePipeline(String templateId) {
+        return removePipeline(Collections.singletonList(templateId));
+    }
+
+    // unread, read 어느 쪽에 있든 templateIds를 지움
+    public static List<Document> removePipeline(List<String> templateIds) {
+        Document ids = new Document("$literal", templateIds);
+        return Arrays.asList(
+                new Document("$set", new Document("unread", new Document("$setDifference", Arrays.asList(field("unread"), ids)))
+                        .append("read", new Document("$setDifference", Arrays.asList(field("read"), ids)))),
+                recountStage());
+    }
+
+    static List<Document> recountPipeline() {
+        return Collections.singletonList(recountStage());
+    }
+
+    private static Document recountStage() {
+        return new Document("$set", new Document("unreadCount", new Document("$size", field("unread"))));
+    }
+
+    private static Document field(String name) {
+        return new Document("$ifNull", Arrays.asList("$" + name, Collections.emptyList()));
+    }
+
+    private Mono<Integer> countFromMongo(Long memberId) {
+        // 보정 전 document는 unreadCount가 없으므로 unread 크기로 대신함
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("memberId").is(memberId)),
+                Aggregation.project()
+                        .and(ConditionalOperators.ifNull("unreadCount")
+                                .thenValueOf(ArrayOperators.Size.lengthOfArray(
+                                        ConditionalOperators.ifNull("unread").then(Collections.emptyList()))))
+                        .as("unreadCount"));
+        return reactiveMongoTemplate.aggregate(aggregation, UserNotification.class, Document.class)
+                .next()
+                .map(document -> ((Number) document.get("unreadCount")).intValue())
+                .defaultIfEmpty(0);
+    }
+
+    private static String mirrorKey(Long memberId) {
+        return UNREAD_COUNT_KEY_PREFIX + memberId;
+    }
+}
@@ -0,0 +1,134 @@
+package com.dailyon.notificationservice.domain.notification.sse;
+
+import lombok.Getter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * member 한 명의 SSE 연결. fan-out 스레드와 heartbeat 스레드가 동시에 emit하므로 emit은 직렬화한다.
+ * 송신 대기 frame은 고정 크기 queue에만 쌓이고, 가득 차면 알림 유형별 SseOverflowPolicy에 따라 처리한다.
+ */
+public class SseConnection {
+    @Getter private final long memberId;
+    private final SseOutboundPolicy outboundPolicy;
+    private final Consumer<SseConnection> onEvicted;
+    private final ArrayBlockingQueue<SseFrame> queue;
+    private final Sinks.Many<SseFrame> sink;
+    // 마지막 heartbeat tick 이후 실제 알림이 나갔는지 여부
+    private final AtomicBoolean deliveredSinceLastTick = new AtomicBoolean(false);
+    private volatile boolean terminated;
+
+    @Getter private volatile int wheelBucket = -1;
+    private int heartbeatTicks;
+
+    public SseConnection(long memberId, SseOutboundPolicy outboundPolicy, Consumer<SseConnection> onEvicted) {
+        this.memberId = memberId;
+        this.outboundPolicy = outboundPolicy;
+        this.onEvicted = onEvicted;
+        this.queue = new ArrayBlockingQueue<>(outboundPolicy.capacity());
+        this.sink = Sinks.many().unicast().onBackpressureBuffer(queue);
+    }
+
+    public Flux<SseFrame> asFlux() {
+        return sink.asFlux();
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public boolean send(SseFrame frame) {
+        boolean emitted = emit(frame);
+        if (emitted) {
+            deliveredSinceLastTick.set(true);
+        }
+        return emitted;
+    }
+
+    public boolean sendHeartbeat(SseFrame frame) {
+        return emit(frame);
+    }
+
+    public synchronized void complete() {
+        if (!terminated) {
+            terminated = true;
+            sink.tryEmitComplete();
+        }
+    }
+
+    public boolean isTerminated() {
+        return terminated;
+    }
+
+    private boolean emit(SseFrame frame) {
+        boolean evicted = false;
+        synchronized (this) {
+            if (terminated) {
+                return false;
+            }
+            SseFrame toEmit = frame;
+            if (queue.remainingCapacity() == 0) {
+                toEmit = handleOverflow(frame);
+                if (toEmit == null) {
+                    evicted = terminated;
+                }
+            }
+            if (toEmit != null) {
+                return sink.tryEmitNext(toEmit).isSuccess();
+            }
+        }
+        if (evicted) {
+            onEvicted.accept(this);
+        }
+        return false;
+    }
+
+    // queue가 가득 찼을 때 호출. 실제로 넣을 frame을 반환하고, 넣지 않을 경우 null
+    private SseFrame handleOverflow(SseFrame frame) {
+        if (frame.isHeartbeat()) {
+            // 읽지 않는 client에게 heartbeat를 더 쌓을 필요 없음
+            outboundPolicy.recordDropped(frame.getNotificationType());
+            return null;
+        }
+        switch (outboundPolicy.policyFor(frame.getNotificationType())) {
+            case DROP_OLDEST:
+                SseFrame oldest = queue.poll();
+                if (oldest != null) {
+                    outboundPolicy.recordDropped(oldest.getNotificationType());
+                }
+                return frame;
+            case COALESCE:
+                int count = frame.getNotificationCount();
+                SseFrame pending;
+                while ((pending = queue.poll()) != null) {
+                    count += pending.getNotificationCount();
+                }
+                outboundPolicy.recordCoalesced(count);
+                return outboundPolicy.summaryFrame(count);
+            case DISCONNECT:
+            default:
+                queue.clear(); // 쌓인 frame을 버려야 complete가 바로 전달됨
+                outboundPolicy.recordEvicted();
+                complete();
+                return null;
+        }
+    }
+
+    // ===== heartbeat wheel 전용. wheel 스레드에서만 호출됨 =====
+
+    void assignWheelBucket(int wheelBucket) {
+        this.wheelBucket = wheelBucket;
+    }
+
+    boolean consumeDelivered() {
+        return deliveredSinceLastTick.getAndSet(false);
+    }
+
+    int incrementHeartbeatTicks() {
+        return ++heartbeatTicks;
+    }
+}
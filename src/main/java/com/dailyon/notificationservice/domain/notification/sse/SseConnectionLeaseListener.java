@@ -0,0 +1,10 @@
+package com.dailyon.notificationservice.domain.notification.sse;
+
+import java.util.List;
+
+/**
+ * heartbeat wheel이 tick마다 살아있는 연결의 memberId 묶음을 넘겨줌. 연결 lease 갱신용
+ */
+public interface SseConnectionLeaseListener {
+    void onLeaseRenewal(List<Long> memberIds);
+}
@@ -0,0 +1,315 @@
+package com.dailyon.notificationservice.domain.notification.sse;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * memberId(long) -> SSE 연결 객체 registry.
+ * Long boxing 없이 primitive key를 쓰는 open-addressing(linear probing) 테이블을 segment 단위로 나누고,
+ * segment마다 StampedLock으로 보호한다. 조회는 optimistic read로 lock 없이 처리되고, 실패시에만 read lock으로 재시도한다.
+ */
+public class SseConnectionRegistry<V> {
+    private static final int DEFAULT_SEGMENT_BITS = 6; // 64 segments
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+
+    private final Segment<V>[] segments;
+    private final int segmentShift;
+
+    public SseConnectionRegistry() {
+        this(DEFAULT_SEGMENT_BITS);
+    }
+
+    @SuppressWarnings("unchecked")
+    public SseConnectionRegistry(int segmentBits) {
+        if (segmentBits < 0 || segmentBits > 16) {
+            throw new IllegalArgumentException("segmentBits must be between 0 and 16: " + segmentBits);
+        }
+        this.segments = new Segment[1 << segmentBits];
+        this.segmentShift = 64 - segmentBits;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment<>(INITIAL_SEGMENT_CAPACITY);
+        }
+    }
+
+    public V get(long key) {
+        long hash = mix(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    public boolean contains(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return 기존에 등록되어 있던 값, 없으면 null
+     */
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value must not be null");
+        }
+        long hash = mix(key);
+        return segmentFor(hash).put(key, hash, value);
+    }
+
+    public V remove(long key) {
+        long hash = mix(key);
+        return segmentFor(hash).remove(key, hash, null);
+    }
+
+    /**
+     * 현재 등록된 값이 expected와 같은 객체일 때만 제거. 재연결로 교체된 새 연결을 이전 연결의 종료 이벤트가 지우지 않도록 함.
+     */
+    public boolean remove(long key, V expected) {
+        if (expected == null) {
+            return false;
+        }
+        long hash = mix(key);
+        return segmentFor(hash).remove(key, hash, expected) != null;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * segment 단위로 snapshot을 뜬 뒤 lock 밖에서 consumer를 호출한다. consumer 안에서 put/remove를 해도 안전함.
+     */
+    public void forEach(EntryConsumer<? super V> consumer) {
+        for (Segment<V> segment : segments) {
+            segment.forEachSnapshot(consumer);
+        }
+    }
+
+    /**
+     * memberIds를 한 번 순회하면서 연결/미연결로 나눈다. member별 추가 객체 생성 없이 기존 Long을 그대로 옮겨 담음.
+     */
+    public Partition partition(Collection<Long> memberIds) {
+        List<Long> connected = new ArrayList<>();
+        List<Long> unconnected = new ArrayList<>();
+        for (Long memberId : memberIds) {
+            if (memberId == null) {
+                continue;
+            }
+            if (contains(memberId)) {
+                connected.add(memberId);
+            } else {
+                unconnected.add(memberId);
+            }
+        }
+        return new Partition(connected, unconnected);
+    }
+
+    private Segment<V> segmentFor(long hash) {
+        return segments[segmentShift == 64 ? 0 : (int) (hash >>> segmentShift)];
+    }
+
+    // murmur3 fmix64. 연속된 memberId도 segment/slot에 고르게 분산시키기 위함
+    static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    @Getter
+    public static class Partition {
+        private final List<Long> connected;
+        private final List<Long> unconnected;
+
+        Partition(List<Long> connected, List<Long> unconnected) {
+            this.connected = connected;
+            this.unconnected = unconnected;
+        }
+    }
+
+    // keys/values 배열을 한 객체로 묶어서 optimistic read 중 resize가 일어나도 두 배열의 세대가 섞이지 않게 함
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+        final int mask;
+        final int threshold;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            this.mask = capacity - 1;
+            this.threshold = capacity >>> 1; // load factor 0.5
+        }
+    }
+
+    private static final class Segment<V> extends StampedLock {
+        private Table table;
+        private int size;
+
+        Segment(int initialCapacity) {
+            this.table = new Table(initialCapacity);
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(long key, long hash) {
+            long stamp = tryOptimisticRead();
+            if (stamp != 0L) {
+                Object found = find(table, key, hash);
+                if (validate(stamp)) {
+                    return (V) found;
+                }
+            }
+            stamp = readLock();
+            try {
+                return (V) find(table, key, hash);
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        V put(long key, long hash, V value) {
+            long stamp = writeLock();
+            try {
+                Table t = table;
+                int i = (int) hash & t.mask;
+                while (t.values[i] != null) {
+                    if (t.keys[i] == key) {
+                        Object previous = t.values[i];
+                        t.values[i] = value;
+                        return (V) previous;
+                    }
+                    i = (i + 1) & t.mask;
+                }
+                t.keys[i] = key;
+                t.values[i] = value;
+                if (++size > t.threshold) {
+                    resize();
+                }
+                return null;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        V remove(long key, long hash, V expected) {
+            long stamp = writeLock();
+            try {
+                Table t = table;
+                int i = (int) hash & t.mask;
+                while (t.values[i] != null && t.keys[i] != key) {
+                    i = (i + 1) & t.mask;
+                }
+                Object previous = t.values[i];
+                if (previous == null || (expected != null && previous != expected)) {
+                    return null;
+                }
+                shiftBackward(t, i);
+                size--;
+                return (V) previous;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        int size() {
+            long stamp = tryOptimisticRead();
+            int current = size;
+            if (validate(stamp)) {
+                return current;
+            }
+            stamp = readLock();
+            try {
+                return size;
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void forEachSnapshot(EntryConsumer<? super V> consumer) {
+            long[] keys;
+            Object[] values;
+            int count = 0;
+            long stamp = readLock();
+            try {
+                Table t = table;
+                keys = new long[size];
+                values = new Object[size];
+                for (int i = 0; i < t.values.length; i++) {
+                    if (t.values[i] != null) {
+                        keys[count] = t.keys[i];
+                        values[count] = t.values[i];
+                        count++;
+                    }
+                }
+            } finally {
+                unlockRead(stamp);
+            }
+            for (int i = 0; i < count; i++) {
+                consumer.accept(keys[i], (V) values[i]);
+            }
+        }
+
+        // tombstone 없이 삭제하기 위해, 뒤에 이어진 probe chain을 빈 칸으로 당겨온다.
+        private static void shiftBackward(Table t, int removedIndex) {
+            int gap = removedIndex;
+            int j = (removedIndex + 1) & t.mask;
+            while (t.values[j] != null) {
+                int home = (int) mix(t.keys[j]) & t.mask;
+                if (((j - home) & t.mask) >= ((j - gap) & t.mask)) {
+                    t.keys[gap] = t.keys[j];
+                    t.values[gap] = t.values[j];
+                    gap = j;
+                }
+                j = (j + 1) & t.mask;
+            }
+            t.values[gap] = null;
+        }
+
+        private void resize() {
+            Table old = table;
+            Table resized = new Table(old.keys.length << 1);
+            for (int i = 0; i < old.values.length; i++) {
+                Object value = old.values[i];
+                if (value == null) {
+                    continue;
+                }
+                int j = (int) mix(old.keys[i]) & resized.mask;
+                while (resized.values[j] != null) {
+                    j = (j + 1) & resized.mask;
+                }
+                resized.keys[j] = old.keys[i];
+                resized.values[j] = value;
+            }
+            table = resized;
+        }
+
+        private static Object find(Table t, long key, long hash) {
+            int i = (int) hash & t.mask;
+            for (int probes = 0; probes <= t.mask; probes++) {
+                Object value = t.values[i];
+                if (value == null) {
+                    return null;
+                }
+                if (t.keys[i] == key) {
+                    return value;
+                }
+                i = (i + 1) & t.mask;
+            }
+            return null;
+        }
+    }
+}
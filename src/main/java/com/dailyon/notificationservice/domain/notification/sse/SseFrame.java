@@ -0,0 +1,36 @@
+package com.dailyon.notificationservice.domain.notification.sse;
+
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import lombok.Getter;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+
+/**
+ * "data:...\n\n" 형태로 이미 인코딩이 끝난 SSE 이벤트 한 건.
+ * bytes는 생성 이후 변경하지 않으므로 여러 연결에서 그대로 공유해도 안전함.
+ */
+public final class SseFrame {
+    private final byte[] bytes;
+    @Getter private final NotificationType notificationType;
+    // NOTIFICATION_SUMMARY frame이 대신하는 알림 수. 일반 알림은 1, heartbeat/welcome은 0
+    @Getter private final int notificationCount;
+
+    SseFrame(byte[] bytes, NotificationType notificationType, int notificationCount) {
+        this.bytes = bytes;
+        this.notificationType = notificationType;
+        this.notificationCount = notificationCount;
+    }
+
+    public int size() {
+        return bytes.length;
+    }
+
+    public boolean isHeartbeat() {
+        return notificationType == NotificationType.HEARTBEAT;
+    }
+
+    // 복사 없이 wrap만 해서 응답 버퍼로 넘김
+    public DataBuffer toDataBuffer(DataBufferFactory bufferFactory) {
+        return bufferFactory.wrap(bytes);
+    }
+}
@@ -0,0 +1,70 @@
+package com.dailyon.notificationservice.domain.notification.sse;
+
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import com.dailyon.notificationservice.domain.notification.dto.HeartbeatServerSentEvent;
+import com.dailyon.notificationservice.domain.notification.dto.NotificationData;
+import com.dailyon.notificationservice.domain.notification.dto.WelcomeServerSentEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * NotificationData를 SSE frame으로 인코딩. ServerSentEventHttpMessageWriter가 data만 있는 이벤트를 쓰는 형식과 동일하게 맞춤.
+ * heartbeat, welcome 같은 고정 이벤트는 빈 생성 시 한 번만 인코딩해두고 재사용한다.
+ */
+@Component
+public class SseFrameEncoder {
+    private static final byte[] DATA_PREFIX = "data:".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EVENT_SUFFIX = "\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper;
+    private final SseFrame heartbeatFrame;
+    private final SseFrame welcomeFrame;
+
+    public SseFrameEncoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.heartbeatFrame = encode(HeartbeatServerSentEvent.getInstance().data());
+        this.welcomeFrame = encode(WelcomeServerSentEvent.getInstance().data());
+    }
+
+    public SseFrame encode(NotificationData notificationData) {
+        NotificationType type = notificationData.getNotificationType();
+        boolean control = type == NotificationType.HEARTBEAT || type == NotificationType.WELCOME;
+        return encode(notificationData, control ? 0 : 1);
+    }
+
+    // 밀린 알림 count개를 대신하는 요약 이벤트
+    public SseFrame summaryFrame(int count) {
+        NotificationData summary = NotificationData.builder()
+                .id(null)
+                .message("새 알림 " + count + "개가 도착했습니다.")
+                .linkUrl("")
+                .notificationType(NotificationType.NOTIFICATION_SUMMARY)
+                .read(false)
+                .build();
+        return encode(summary, count);
+    }
+
+    private SseFrame encode(NotificationData notificationData, int notificationCount) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(notificationData);
+            byte[] frame = new byte[DATA_PREFIX.length + json.length + EVENT_SUFFIX.length];
+            System.arraycopy(DATA_PREFIX, 0, frame, 0, DATA_PREFIX.length);
+            System.arraycopy(json, 0, frame, DATA_PREFIX.length, json.length);
+            System.arraycopy(EVENT_SUFFIX, 0, frame, DATA_PREFIX.length + json.length, EVENT_SUFFIX.length);
+            return new SseFrame(frame, notificationData.getNotificationType(), notificationCount);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("SSE frame 직렬화 중 에러", e);
+        }
+    }
+
+    public SseFrame heartbeatFrame() {
+        return heartbeatFrame;
+    }
+
+    public SseFrame welcomeFrame() {
+        return welcomeFrame;
+    }
+}
@@ -0,0 +1,169 @@
+package com.dailyon.notificationservice.domain.notification.sse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 모든 SSE 연결의 heartbeat를 스레드 하나로 처리하는 hashed wheel.
+ * 연결마다 Flux.interval을 만들지 않고, 등록 시점의 bucket에 넣어두면 wheel이 한 바퀴(interval) 돌 때마다 해당 bucket을 한 번에 처리한다.
+ * 직전 tick 이후 실제 알림이 나간 연결은 연결이 살아있다는 게 확인되었으므로 heartbeat를 건너뛴다.
+ */
+@Slf4j
+@Component
+public class SseHeartbeatScheduler {
+    private final SseFrameEncoder sseFrameEncoder;
+    private final ObjectProvider<SseConnectionLeaseListener> leaseListeners;
+    private final int wheelSize;
+    private final long tickMillis;
+    private final int maxHeartbeats;
+
+    private final Set<SseConnection>[] buckets;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final AtomicInteger registered = new AtomicInteger();
+    private final AtomicLong cpuNanos = new AtomicLong();
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sse-heartbeat-wheel");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter heartbeatWrites;
+    private final Counter heartbeatSkips;
+    private final Counter expiredConnections;
+
+    @SuppressWarnings("unchecked")
+    public SseHeartbeatScheduler(
+            SseFrameEncoder sseFrameEncoder,
+            ObjectProvider<SseConnectionLeaseListener> leaseListeners,
+            MeterRegistry meterRegistry,
+            @Value("${notification.sse.heartbeat.interval:15s}") Duration interval,
+            @Value("${notification.sse.heartbeat.wheel-size:15}") int wheelSize,
+            @Value("${notification.sse.heartbeat.max-count:80}") int maxHeartbeats) {
+        this.sseFrameEncoder = sseFrameEncoder;
+        this.leaseListeners = leaseListeners;
+        this.wheelSize = wheelSize;
+        this.tickMillis = Math.max(1L, interval.toMillis() / wheelSize);
+        this.maxHeartbeats = maxHeartbeats;
+        this.buckets = new Set[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = ConcurrentHashMap.newKeySet();
+        }
+
+        this.heartbeatWrites = Counter.builder("notification.sse.heartbeat.writes")
+                .description("heartbeat frame 송신 수")
+                .register(meterRegistry);
+        this.heartbeatSkips = Counter.builder("notification.sse.heartbeat.skipped")
+                .description("직전 tick 이후 알림이 송신되어 생략된 heartbeat 수")
+                .register(meterRegistry);
+        this.expiredConnections = Counter.builder("notification.sse.heartbeat.expired")
+                .description("최대 heartbeat 횟수에 도달해 종료된 연결 수")
+                .register(meterRegistry);
+        FunctionCounter.builder("notification.sse.heartbeat.cpu", cpuNanos, nanos -> nanos.get() / 1_000_000_000d)
+                .description("heartbeat wheel 스레드가 사용한 CPU 시간")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("notification.sse.heartbeat.connections", registered, AtomicInteger::get)
+                .description("heartbeat wheel에 등록된 연결 수")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        executor.scheduleAtFixedRate(this::tickSafely, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    // 현재 cursor 바로 앞 bucket에 넣어서 첫 heartbeat가 약 한 interval 뒤에 나가도록 함
+    public void register(SseConnection connection) {
+        int bucket = Math.floorMod(cursor.get() - 1, wheelSize);
+        connection.assignWheelBucket(bucket);
+        if (buckets[bucket].add(connection)) {
+            registered.incrementAndGet();
+        }
+    }
+
+    public void unregister(SseConnection connection) {
+        int bucket = connection.getWheelBucket();
+        if (bucket >= 0 && buckets[bucket].remove(connection)) {
+            registered.decrementAndGet();
+        }
+    }
+
+    private void tickSafely() {
+        try {
+            tick();
+        } catch (Throwable e) {
+            // 예외가 밖으로 나가면 scheduleAtFixedRate가 중단되므로 여기서 잡음
+            log.error("heartbeat wheel tick 처리 중 에러", e);
+        }
+    }
+
+    private void tick() {
+        long cpuStart = currentThreadCpuTime();
+        int index = cursor.getAndUpdate(current -> (current + 1) % wheelSize);
+        Set<SseConnection> bucket = buckets[index];
+        SseFrame heartbeatFrame = sseFrameEncoder.heartbeatFrame();
+        List<Long> aliveMemberIds = new ArrayList<>(bucket.size());
+
+        for (SseConnection connection : bucket) {
+            if (connection.isTerminated()) {
+                unregister(connection);
+                continue;
+            }
+            if (connection.incrementHeartbeatTicks() > maxHeartbeats) {
+                // 장시간 유지된 연결은 정리. client(EventSource)가 자동으로 재연결함
+                // 연결 목록/connection directory 정리는 SseNotificationService.streamNotifications의 doFinally에서 처리
+                unregister(connection);
+                connection.complete();
+                expiredConnections.increment();
+                continue;
+            }
+            aliveMemberIds.add(connection.getMemberId());
+            if (connection.consumeDelivered()) {
+                heartbeatSkips.increment();
+                continue;
+            }
+            if (connection.sendHeartbeat(heartbeatFrame)) {
+                heartbeatWrites.increment();
+            }
+        }
+
+        if (!aliveMemberIds.isEmpty()) {
+            leaseListeners.orderedStream().forEach(listener -> listener.onLeaseRenewal(aliveMemberIds));
+        }
+
+        if (cpuStart >= 0) {
+            cpuNanos.addAndGet(currentThreadCpuTime() - cpuStart);
+        }
+    }
+
+    private long currentThreadCpuTime() {
+        return threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : -1L;
+    }
+}
@@ -0,0 +1,62 @@
+package com.dailyon.notificationservice.domain.notification.sse;
+
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 연결별 outbound queue 용량/overflow 정책과 관련 metric을 관리
+ */
+@Component
+public class SseOutboundPolicy {
+    private final SseOutboundProperties properties;
+    private final SseFrameEncoder sseFrameEncoder;
+    private final Map<NotificationType, Counter> droppedCounters = new EnumMap<>(NotificationType.class);
+    private final Counter coalescedCounter;
+    private final Counter evictedCounter;
+
+    public SseOutboundPolicy(SseOutboundProperties properties, SseFrameEncoder sseFrameEncoder, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.sseFrameEncoder = sseFrameEncoder;
+        for (NotificationType type : NotificationType.values()) {
+            droppedCounters.put(type, Counter.builder("notification.sse.outbound.dropped")
+                    .description("queue overflow로 버려진 frame 수")
+                    .tag("type", type.name())
+                    .register(meterRegistry));
+        }
+        this.coalescedCounter = Counter.builder("notification.sse.outbound.coalesced")
+                .description("요약 이벤트로 합쳐진 알림 수")
+                .register(meterRegistry);
+        this.evictedCounter = Counter.builder("notification.sse.outbound.evicted")
+                .description("느린 client로 판단되어 끊긴 연결 수")
+                .register(meterRegistry);
+    }
+
+    public int capacity() {
+        return Math.max(1, properties.getCapacity());
+    }
+
+    public SseOverflowPolicy policyFor(NotificationType notificationType) {
+        return properties.getPolicies().getOrDefault(notificationType, properties.getDefaultPolicy());
+    }
+
+    public SseFrame summaryFrame(int count) {
+        return sseFrameEncoder.summaryFrame(count);
+    }
+
+    void recordDropped(NotificationType notificationType) {
+        droppedCounters.get(notificationType).increment();
+    }
+
+    void recordCoalesced(int count) {
+        coalescedCounter.increment(count);
+    }
+
+    void recordEvicted() {
+        evictedCounter.increment();
+    }
+}
@@ -0,0 +1,22 @@
+package com.dailyon.notificationservice.domain.notification.sse;
+
+import com.dailyon.notificationservice.domain.notification.document.enums.NotificationType;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "notification.sse.outbound")
+public class SseOutboundProperties {
+    // 연결별로 송신 대기할 수 있는 최대 frame 수
+    private int capacity = 64;
+    private SseOverflowPolicy defaultPolicy = SseOverflowPolicy.COALESCE;
+    // NotificationType별 overflow 정책. 없으면 defaultPolicy 사용
+    private Map<NotificationType, SseOverflowPolicy> policies = new EnumMap<>(NotificationType.class);
+}
@@ -0,0 +1,10 @@
+package com.dailyon.notificationservice.domain.notification.sse;
+
+/**
+ * 연결별 outbound queue가 가득 찼을 때 새 frame 처리 방식
+ */
+public enum SseOverflowPolicy {
+    DROP_OLDEST, // 가장 오래된 frame을 버리고 새 frame을 넣음
+    COALESCE, // 쌓인 알림을 "새 알림 N개" 이벤트 하나로 합침
+    DISCONNECT // 느린 client로 보고 연결을 끊음. client가 재연결하면 알림함에서 다시 조회
+}
@@ -0,0 +1,152 @@
+package com.dailyon.notificationservice.domain.notification.service;
+
+import com.dailyon.notificationservice.domain.notification.document.UserNotification;
+import com.dailyon.notificationservice.domain.notification.repository.UserNotificationRepository;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * fan-out(unread 추가)과 읽음 처리가 같은 user_notification document에 동시에 들어와도
+ * 알림이 사라지지 않고 unreadCount가 unread 크기와 같은지 embedded mongo로 확인.
+ * 짝수 member는 unreadCount가 있는 document, 홀수 member는 unreadCount가 없는 이전 document.
+ */
+@DataMongoTest(properties = {
+        "spring.mongodb.embedded.version=5.0.5",
+        "spring.cloud.config.enabled=false",
+        "spring.config.import-check.enabled=false",
+        "spring.cloud.discovery.enabled=false",
+        "eureka.client.enabled=false"
+})
+class UnreadCountConcurrencyTest {
+    private static final int MEMBER_COUNT = 200;
+    private static final int FAN_OUT_COUNT = 20;
+    private static final String READ_TARGET = "read-target";
+    private static final String ALREADY_UNREAD = "already-unread";
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    private NotificationService notificationService;
+    private List<Long> memberIds;
+
+    @BeforeEach
+    void setUp() {
+        InboxService inboxService = mock(InboxService.class);
+        when(inboxService.markAsRead(anyLong(), anyString())).thenReturn(Mono.empty());
+        UnreadCountService unreadCountService = mock(UnreadCountService.class);
+        when(unreadCountService.evict(anyLong())).thenReturn(Mono.empty());
+        notificationService = new NotificationService(
+                mock(NotificationTemplateStore.class),
+                mock(UserNotificationRepository.class),
+                mock(RestockSubscriberService.class),
+                reactiveMongoTemplate,
+                inboxService,
+                mock(InboxMigrationService.class),
+                unreadCountService,
+                mock(BroadcastService.class));
+
+        memberIds = LongStream.rangeClosed(1, MEMBER_COUNT).boxed().collect(Collectors.toList());
+        List<Document> documents = new ArrayList<>(MEMBER_COUNT);
+        for (Long memberId : memberIds) {
+            Document document = new Document("memberId", memberId)
+                    .append("unread", Arrays.asList(READ_TARGET, ALREADY_UNREAD))
+                    .append("read", new ArrayList<>());
+            if (memberId % 2 == 0) {
+                document.append("unreadCount", 2);
+            }
+            documents.add(document);
+        }
+        StepVerifier.create(collection()
+                        .flatMap(collection -> Mono.from(collection.drop())
+                                .then(Mono.from(collection.insertMany(documents)))))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    void concurrentFanOutAndMarkAsReadLoseNoNotification() {
+        // 재전송으로 같은 template이 두 번 들어오는 경우도 섞음
+        Flux<Void> fanOuts = Flux.range(0, FAN_OUT_COUNT)
+                .concatWith(Flux.just(0))
+                .flatMap(i -> bulkWrite(NotificationProcessingService.addUnreadWriteModels(memberIds, templateId(i))), 4)
+                .subscribeOn(Schedulers.parallel());
+        Flux<Void> reads = Flux.fromIterable(memberIds)
+                .flatMap(memberId -> notificationService.markNotificationAsRead(READ_TARGET, memberId), 16)
+                .subscribeOn(Schedulers.parallel());
+
+        StepVerifier.create(Flux.merge(fanOuts, reads).then()).verifyComplete();
+
+        Set<String> expectedUnread = new HashSet<>();
+        for (int i = 0; i < FAN_OUT_COUNT; i++) {
+            expectedUnread.add(templateId(i));
+        }
+        expectedUnread.add(ALREADY_UNREAD);
+
+        StepVerifier.create(reactiveMongoTemplate.findAll(UserNotification.class).collectList())
+                .assertNext(notifications -> {
+                    assertThat(notifications).hasSize(MEMBER_COUNT);
+                    for (UserNotification notification : notifications) {
+                        assertThat(notification.getUnread()).as("memberId %d unread", notification.getMemberId())
+                                .containsExactlyInAnyOrderElementsOf(expectedUnread);
+                        assertThat(notification.getRead()).as("memberId %d read", notification.getMemberId())
+                                .containsExactly(READ_TARGET);
+                        assertThat(notification.getUnreadCount()).as("memberId %d unreadCount", notification.getMemberId())
+                                .isEqualTo(expectedUnread.size());
+                    }
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void markAsReadOnDocumentWithoutUnreadCountRecountsInsteadOfDecrementing() {
+        Long legacyMemberId = 1L;
+
+        StepVerifier.create(notificationService.markNotificationAsRead(READ_TARGET, legacyMemberId)
+                        // 이미 읽은 알림을 다시 읽어도 줄어들지 않음
+                        .then(notificationService.markNotificationAsRead(READ_TARGET, legacyMemberId))
+                        .then(collection().flatMap(collection -> Mono.from(collection.find(new Document("memberId", legacyMemberId)).first()))))
+                .assertNext(document -> {
+                    assertThat(document.getInteger("unreadCount")).isEqualTo(1);
+                    assertThat(document.getList("unread", String.class)).containsExactly(ALREADY_UNREAD);
+                    assertThat(document.getList("read", String.class)).containsExactly(READ_TARGET);
+                })
+                .verifyComplete();
+    }
+
+    private Mono<Void> bulkWrite(List<WriteModel<Document>> models) {
+        return collection().flatMap(collection -> Mono.from(collection.bulkWrite(models, new BulkWriteOptions().ordered(false)))).then();
+    }
+
+    private Mono<MongoCollection<Document>> collection() {
+        return reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(UserNotification.class));
+    }
+
+    private static String templateId(int i) {
+        return "template-" + i;
+    }
+}